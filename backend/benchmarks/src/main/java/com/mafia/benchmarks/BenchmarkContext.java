@@ -0,0 +1,69 @@
+package com.mafia.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.messaging.BroadcastCoalescer;
+import com.mafia.messaging.MessageDispatcher;
+import com.mafia.service.ClusterRing;
+import com.mafia.service.GameMetrics;
+import com.mafia.service.GameService;
+import com.mafia.service.LobbyExecutor;
+import com.mafia.service.LobbyService;
+import com.mafia.store.EventJournal;
+import com.mafia.store.InMemoryStore;
+import com.mafia.store.LobbyReaper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The services under benchmark, wired as in the app but without the web
+ * layer: the broker is replaced by a SimpMessagingTemplate whose channel
+ * only counts messages, and the journal and reaper are off.
+ */
+@Configuration
+@Import({InMemoryStore.class, LobbyExecutor.class, BroadcastCoalescer.class, EventJournal.class,
+        ClusterRing.class, LobbyReaper.class, MessageDispatcher.class, GameMetrics.class,
+        LobbyService.class, GameService.class})
+public class BenchmarkContext {
+
+    // Messages the stub broker accepted; read so sends can't be optimized away
+    static final LongAdder SENT = new LongAdder();
+
+    static AnnotationConfigApplicationContext start() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", Map.of(
+            "mafia.journal.enabled", "false",
+            "mafia.reaper.enabled", "false")));
+        context.register(BenchmarkContext.class);
+        context.refresh();
+        return context;
+    }
+
+    @Bean
+    public SimpMessagingTemplate simpMessagingTemplate() {
+        return new SimpMessagingTemplate((message, timeout) -> {
+            SENT.increment();
+            return true;
+        });
+    }
+
+    // Same defaults as Boot's auto-configured ObjectMapper
+    @Bean
+    public ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Bean
+    public MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+}
@@ -0,0 +1,40 @@
+package com.mafia.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks once per thread count and writes each run's results
+ * as JMH JSON, e.g. jmh-results/threads-4.json.
+ *
+ * Usage: java -jar target/benchmarks.jar [threads] [include]
+ * - threads: comma-separated thread counts (default: 1 and the number of cores)
+ * - include: regex of benchmarks to run (default: all)
+ * For any other JMH option use: java -cp target/benchmarks.jar org.openjdk.jmh.Main
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        String threadList = args.length > 0 ? args[0] : (cores > 1 ? "1," + cores : "1");
+        String include = args.length > 1 ? args[1] : "com.mafia.benchmarks.*";
+
+        File dir = new File("jmh-results");
+        dir.mkdirs();
+        for (String threads : threadList.split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            Options options = new OptionsBuilder()
+                .include(include)
+                .threads(count)
+                .resultFormat(ResultFormatType.JSON)
+                .result(new File(dir, "threads-" + count + ".json").getPath())
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
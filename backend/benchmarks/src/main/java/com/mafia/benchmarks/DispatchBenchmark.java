@@ -0,0 +1,58 @@
+package com.mafia.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcast and game logic paths, called like the controllers call them:
+ * the caller waits while the work runs on the lobby's lane, and frames go
+ * to the stub broker.
+ *
+ * Frames are cached per lobby version, so the plain variants measure a
+ * cache hit (another recipient, or a repeat with nothing changed). The
+ * "Uncached" variants bump the version first, so the payload is built and
+ * serialized with Jackson on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Benchmark
+    public void broadcastPlayerListUpdate(GameFixture fixture, GameFixture.Cursor cursor) {
+        fixture.lobbyService.broadcastPlayerListUpdate(fixture.lobbyIds[cursor.lobby]);
+    }
+
+    @Benchmark
+    public void broadcastPlayerListUpdateUncached(GameFixture fixture, GameFixture.Cursor cursor) {
+        fixture.lobby(cursor.lobby).incrementVersion();
+        fixture.lobbyService.broadcastPlayerListUpdate(fixture.lobbyIds[cursor.lobby]);
+    }
+
+    // A resume without lastSeq sends the player a GAME_SNAPSHOT
+    @Benchmark
+    public void sendGameSnapshot(GameFixture fixture, GameFixture.Cursor cursor) {
+        fixture.lobbyService.resumeSession(fixture.lobbyIds[cursor.lobby], fixture.sessionIds[cursor.lobby][cursor.next()], null);
+    }
+
+    @Benchmark
+    public void sendGameSnapshotUncached(GameFixture fixture, GameFixture.Cursor cursor) {
+        fixture.lobby(cursor.lobby).incrementVersion();
+        fixture.lobbyService.resumeSession(fixture.lobbyIds[cursor.lobby], fixture.sessionIds[cursor.lobby][cursor.next()], null);
+    }
+
+    // Sends every player ROLE_ASSIGNED, then broadcasts the phase change
+    @Benchmark
+    public void assignRolesRandomly(GameFixture fixture, GameFixture.Cursor cursor) {
+        fixture.gameService.assignRolesRandomly(fixture.lobbyIds[cursor.lobby], fixture.roleCounts);
+    }
+}
@@ -0,0 +1,131 @@
+package com.mafia.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.dto.LobbyResponse;
+import com.mafia.model.Lobby;
+import com.mafia.model.enums.Role;
+import com.mafia.service.GameService;
+import com.mafia.service.LobbyService;
+import com.mafia.store.InMemoryStore;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * LOBBIES lobbies of {@code players} players each (God included), every
+ * player joined through LobbyService and connected with a WebSocket session
+ * id. Benchmark threads each work on their own lobby (see Cursor), so with
+ * several threads the lobbies run on different lanes, as on a busy server.
+ */
+@State(Scope.Benchmark)
+public class GameFixture {
+
+    static final int LOBBIES = 8;
+
+    @Param({"5", "20", "200", "2000"})
+    public int players;
+
+    private PrintStream stdout;
+
+    AnnotationConfigApplicationContext context;
+    InMemoryStore store;
+    LobbyService lobbyService;
+    GameService gameService;
+    ObjectMapper objectMapper;
+
+    String[] lobbyIds;
+    String[][] tokens;
+    String[][] sessionIds;
+    UUID[][] playerIds;
+    Map<Role, Integer> roleCounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The services log each connect and snapshot to stdout, which would dominate the timings
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        context = BenchmarkContext.start();
+        store = context.getBean(InMemoryStore.class);
+        lobbyService = context.getBean(LobbyService.class);
+        gameService = context.getBean(GameService.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        lobbyIds = new String[LOBBIES];
+        tokens = new String[LOBBIES][players];
+        sessionIds = new String[LOBBIES][players];
+        playerIds = new UUID[LOBBIES][players];
+        for (int l = 0; l < LOBBIES; l++) {
+            LobbyResponse created = lobbyService.createLobby("God " + l);
+            String lobbyId = created.getLobbyId();
+            lobbyIds[l] = lobbyId;
+            store.getLobby(lobbyId).setMaxPlayers(players);
+            tokens[l][0] = created.getPlayerToken();
+            playerIds[l][0] = created.getPlayerId();
+            for (int p = 1; p < players; p++) {
+                LobbyResponse joined = lobbyService.joinLobby(lobbyId, "Player " + p, null);
+                tokens[l][p] = joined.getPlayerToken();
+                playerIds[l][p] = joined.getPlayerId();
+            }
+            for (int p = 0; p < players; p++) {
+                sessionIds[l][p] = UUID.randomUUID().toString();
+                lobbyService.markPlayerConnected(lobbyId, tokens[l][p], sessionIds[l][p]);
+            }
+        }
+
+        // Keep one God; a quarter mafia, a doctor and a detective, the rest villagers
+        roleCounts = new EnumMap<>(Role.class);
+        int mafia = Math.max(1, players / 4);
+        roleCounts.put(Role.GOD, 1);
+        roleCounts.put(Role.MAFIA, mafia);
+        roleCounts.put(Role.DOCTOR, 1);
+        roleCounts.put(Role.DETECTIVE, 1);
+        roleCounts.put(Role.VILLAGER, players - 3 - mafia);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        System.setOut(stdout);
+    }
+
+    Lobby lobby(int index) {
+        return store.getLobby(lobbyIds[index]);
+    }
+
+    /**
+     * Per-thread position: a lobby of its own and the next player to look up.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int threads;
+
+        int lobby;
+        int player;
+        int players;
+
+        @Setup(Level.Trial)
+        public void setUp(GameFixture fixture) {
+            synchronized (Cursor.class) {
+                lobby = threads++ % LOBBIES;
+            }
+            players = fixture.players;
+        }
+
+        int next() {
+            int p = player;
+            player = p + 1 == players ? 0 : p + 1;
+            return p;
+        }
+    }
+}
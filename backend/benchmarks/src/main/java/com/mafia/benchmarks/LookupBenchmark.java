@@ -0,0 +1,58 @@
+package com.mafia.benchmarks;
+
+import com.mafia.dto.LobbyResponse;
+import com.mafia.model.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store and lobby lookups done on every REST call and STOMP frame, and the
+ * lobby info response. Lookups cycle through all of the lobby's players.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    // What a lane does for a token: resolve its lobby in the store, then the player in that lobby
+    @Benchmark
+    public Player storeGetPlayerByToken(GameFixture fixture, GameFixture.Cursor cursor) {
+        String token = fixture.tokens[cursor.lobby][cursor.next()];
+        return fixture.store.getLobby(fixture.store.getLobbyIdByToken(token)).getPlayerByToken(token);
+    }
+
+    @Benchmark
+    public Player storeGetPlayerByWebSocketSession(GameFixture fixture, GameFixture.Cursor cursor) {
+        String wsSessionId = fixture.sessionIds[cursor.lobby][cursor.next()];
+        return fixture.store.getLobby(fixture.store.getLobbyIdByWebSocketSession(wsSessionId)).getPlayerByWebSocketSession(wsSessionId);
+    }
+
+    @Benchmark
+    public Player lobbyGetPlayerById(GameFixture fixture, GameFixture.Cursor cursor) {
+        return fixture.lobby(cursor.lobby).getPlayerById(fixture.playerIds[cursor.lobby][cursor.next()]);
+    }
+
+    @Benchmark
+    public Player lobbyGetGod(GameFixture fixture, GameFixture.Cursor cursor) {
+        return fixture.lobby(cursor.lobby).getGod();
+    }
+
+    @Benchmark
+    public LobbyResponse lobbyResponseFromLobby(GameFixture fixture, GameFixture.Cursor cursor) {
+        return LobbyResponse.fromLobby(fixture.lobby(cursor.lobby));
+    }
+
+    @Benchmark
+    public byte[] lobbyResponseSerialized(GameFixture fixture, GameFixture.Cursor cursor) throws Exception {
+        return fixture.objectMapper.writeValueAsBytes(LobbyResponse.fromLobby(fixture.lobby(cursor.lobby)));
+    }
+}
@@ -0,0 +1,48 @@
+package com.mafia.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latency samples in nanoseconds, reported as percentiles in milliseconds.
+ * Thread-safe; samples are kept (a run has at most a few hundred thousand).
+ */
+final class Latencies {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int count;
+
+    Latencies(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * One report line: count, p50/p99/p999 and max.
+     */
+    synchronized String summary() {
+        if (count == 0) {
+            return String.format("%-20s n=0", name);
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return String.format("%-20s n=%-7d p50 %8.2f  p99 %8.2f  p999 %8.2f  max %8.2f ms",
+            name, count, millis(sorted, 0.5), millis(sorted, 0.99), millis(sorted, 0.999),
+            sorted[count - 1] / 1e6);
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,332 @@
+package com.mafia.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test: boots the backend jar on localhost (or targets --url), then
+ * drives thousands of simulated clients through the same flow as the
+ * frontend.
+ *
+ * 1. create/join every lobby over REST;
+ * 2. connect: STOMP CONNECT, subscribe to the lobby topic and private queue;
+ * 3. game: the God assigns roles and advances the phase for some rounds;
+ * 4. reconnect storm: every socket drops at once (a load balancer failover)
+ *    and all clients reconnect together, some resuming and some reloading.
+ *
+ * Reports connect, snapshot and broadcast fan-out latency percentiles, and
+ * the server's heap and CPU, per phase.
+ *
+ * Usage: java -jar target/loadtest.jar [--lobbies=50] [--players=20] [--rounds=5]
+ *        [--transport=native|sockjs] [--scenario=all|game|reconnect]
+ *        [--reload-fraction=0.2] [--connect-concurrency=200]
+ *        [--url=http://host:port | --jar=../target/mafia-backend-1.0.0.jar --port=18080 --server-jvm-args="-Xmx1g"]
+ */
+public final class LoadTest {
+
+    static final int HEARTBEAT_MILLIS = 20000;
+    private static final long TIMEOUT_MILLIS = 30000;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Map<String, String> options;
+    private final HttpClient http;
+    private final String baseUrl;
+    private final List<SimulatedLobby> lobbies = new ArrayList<>();
+    private final List<SimulatedClient> clients = new ArrayList<>();
+
+    private LoadTest(Map<String, String> options, HttpClient http, String baseUrl) {
+        this.options = options;
+        this.http = http;
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        HttpClient http = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "loadtest-io");
+                t.setDaemon(true);
+                return t;
+            }))
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+
+        ServerProcess server = null;
+        String baseUrl = options.get("url");
+        if (baseUrl == null) {
+            int port = Integer.parseInt(options.getOrDefault("port", "18080"));
+            List<String> jvmArgs = Arrays.stream(options.getOrDefault("server-jvm-args", "").split(" "))
+                .filter(arg -> !arg.isBlank())
+                .toList();
+            server = ServerProcess.start(options.getOrDefault("jar", "../target/mafia-backend-1.0.0.jar"), port, jvmArgs);
+            baseUrl = "http://localhost:" + port;
+            server.awaitReady(http, baseUrl, 120000);
+        }
+
+        ServerMonitor monitor = new ServerMonitor(http, baseUrl);
+        monitor.start();
+        try {
+            new LoadTest(options, http, baseUrl).run(monitor);
+        } finally {
+            monitor.stop();
+            if (server != null) {
+                server.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    private void run(ServerMonitor monitor) throws Exception {
+        String scenario = options.getOrDefault("scenario", "all");
+        setUp();
+        monitor.takeSummary();
+
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadtest-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeats.scheduleAtFixedRate(() -> clients.forEach(SimulatedClient::heartbeat),
+            HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+        connectAll(monitor);
+        if (!scenario.equals("reconnect")) {
+            playGames(monitor);
+        }
+        if (!scenario.equals("game")) {
+            reconnectStorm(monitor);
+        }
+        heartbeats.shutdownNow();
+    }
+
+    /**
+     * Create the lobbies and join their players over REST.
+     */
+    private void setUp() throws Exception {
+        int lobbyCount = Integer.parseInt(options.getOrDefault("lobbies", "50"));
+        int players = Integer.parseInt(options.getOrDefault("players", "20"));
+        if (players < 2 || players > 20) {
+            throw new IllegalArgumentException("--players must be 2..20 (the God included)");
+        }
+        boolean sockJs = options.getOrDefault("transport", "native").equals("sockjs");
+        String wsBase = baseUrl.replaceFirst("^http", "ws");
+
+        long start = System.nanoTime();
+        try (ExecutorService setup = Executors.newFixedThreadPool(32)) {
+            List<Future<SimulatedLobby>> created = new ArrayList<>();
+            for (int i = 0; i < lobbyCount; i++) {
+                int index = i;
+                created.add(setup.submit(() -> {
+                    JsonNode god = post("/api/lobby/create", Map.of("godName", "God " + index));
+                    SimulatedLobby lobby = new SimulatedLobby(god.get("lobbyId").asText());
+                    lobby.clients.add(client(lobby, god, wsBase, sockJs));
+                    for (int p = 1; p < players; p++) {
+                        JsonNode player = post("/api/lobby/join", Map.of("lobbyId", lobby.id, "playerName", "Player " + p));
+                        lobby.clients.add(client(lobby, player, wsBase, sockJs));
+                    }
+                    return lobby;
+                }));
+            }
+            for (Future<SimulatedLobby> lobby : created) {
+                lobbies.add(lobby.get());
+                clients.addAll(lobbies.get(lobbies.size() - 1).clients);
+            }
+        }
+        System.out.printf("Set up %d lobbies, %d players over %s in %.1f s%n",
+            lobbies.size(), clients.size(), sockJs ? "SockJS" : "native WebSocket", (System.nanoTime() - start) / 1e9);
+    }
+
+    private SimulatedClient client(SimulatedLobby lobby, JsonNode response, String wsBase, boolean sockJs) {
+        return new SimulatedClient(lobby, response.get("playerId").asText(), response.get("playerToken").asText(),
+            http, wsBase, sockJs);
+    }
+
+    private JsonNode post(String path, Map<String, String> body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body)))
+            .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(path + " returned " + response.statusCode());
+        }
+        return JSON.readTree(response.body());
+    }
+
+    /**
+     * First connect, a bounded number at a time (clients arriving).
+     */
+    private void connectAll(ServerMonitor monitor) throws InterruptedException {
+        int concurrency = Integer.parseInt(options.getOrDefault("connect-concurrency", "200"));
+        Latencies connect = new Latencies("connect");
+        Latencies snapshot = new Latencies("snapshot");
+        Semaphore permits = new Semaphore(concurrency);
+        List<CompletableFuture<?>> sessions = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (SimulatedClient client : clients) {
+            permits.acquire();
+            sessions.add(session(client, false, connect, snapshot).whenComplete((ignored, error) -> permits.release()));
+        }
+        int failed = awaitAll(sessions);
+        report("Connect (" + concurrency + " at a time)", start, failed, monitor, connect, snapshot);
+    }
+
+    /**
+     * Connect, then subscribe. Completes on the snapshot after subscribing, or
+     * straight after subscribing if no snapshot latency is wanted (a resumed
+     * session that missed nothing gets no frame).
+     */
+    private static CompletableFuture<Long> session(SimulatedClient client, boolean resume, Latencies connect, Latencies snapshot) {
+        return client.connect(resume)
+            .thenCompose(connectNanos -> {
+                connect.record(connectNanos);
+                CompletableFuture<Long> resumed = client.subscribe();
+                if (snapshot == null) {
+                    return CompletableFuture.completedFuture(connectNanos);
+                }
+                return resumed.thenApply(snapshotNanos -> {
+                    snapshot.record(snapshotNanos);
+                    return snapshotNanos;
+                });
+            })
+            .orTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Every God assigns roles, then advances the phase --rounds times, all
+     * lobbies at once.
+     */
+    private void playGames(ServerMonitor monitor) throws Exception {
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "5"));
+        Latencies reveals = new Latencies("role reveal");
+        Latencies assign = new Latencies("assign-roles fanout");
+        Latencies phases = new Latencies("next-phase fanout");
+        AtomicInteger incomplete = new AtomicInteger();
+
+        long start = System.nanoTime();
+        forEachLobby(lobby -> {
+            if (!lobby.assignRoles(reveals, assign, TIMEOUT_MILLIS)) {
+                incomplete.incrementAndGet();
+            }
+            for (int round = 1; round <= rounds; round++) {
+                if (!lobby.nextPhase(round, phases, TIMEOUT_MILLIS)) {
+                    incomplete.incrementAndGet();
+                }
+            }
+        });
+        report("Game (assign roles + " + rounds + " rounds per lobby)", start, incomplete.get(), monitor, reveals, assign, phases);
+    }
+
+    /**
+     * Drop every socket at once, then reconnect everyone at once. Most
+     * clients resume from their last seq; --reload-fraction of them reconnect
+     * without it, like a page reload, and get a full snapshot.
+     */
+    private void reconnectStorm(ServerMonitor monitor) throws Exception {
+        double reloadFraction = Double.parseDouble(options.getOrDefault("reload-fraction", "0.2"));
+        Latencies reconnect = new Latencies("reconnect");
+        Latencies snapshot = new Latencies("reload snapshot");
+        Latencies fanOut = new Latencies("fanout after storm");
+
+        clients.forEach(SimulatedClient::abort);
+        // Let the server notice the dead sockets, as it would after a failover
+        Thread.sleep(2000);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> sessions = new ArrayList<>();
+        for (SimulatedClient client : clients) {
+            boolean reload = ThreadLocalRandom.current().nextDouble() < reloadFraction;
+            sessions.add(session(client, !reload, reconnect, reload ? snapshot : null));
+        }
+        int failed = awaitAll(sessions);
+        // Resumed sessions were not waited on past SUBSCRIBE; let those land
+        Thread.sleep(1000);
+
+        AtomicInteger incomplete = new AtomicInteger();
+        forEachLobby(lobby -> {
+            if (!lobby.nextPhase(0, fanOut, TIMEOUT_MILLIS)) {
+                incomplete.incrementAndGet();
+            }
+        });
+        report("Reconnect storm (" + clients.size() + " at once)", start, failed + incomplete.get(), monitor,
+            reconnect, snapshot, fanOut);
+    }
+
+    private interface LobbyTask {
+        void run(SimulatedLobby lobby) throws Exception;
+    }
+
+    private void forEachLobby(LobbyTask task) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SimulatedLobby lobby : lobbies) {
+                futures.add(executor.submit(() -> {
+                    task.run(lobby);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private static int awaitAll(List<CompletableFuture<?>> futures) {
+        int failed = 0;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.join();
+            } catch (Exception e) {
+                if (failed++ == 0) {
+                    System.err.println("First failure: " + e.getCause());
+                }
+            }
+        }
+        return failed;
+    }
+
+    private static void report(String phase, long startedAt, int failures, ServerMonitor monitor, Latencies... latencies)
+            throws InterruptedException {
+        // One more monitor sample covering the end of the phase
+        Thread.sleep(1100);
+        System.out.printf("%n%s: %.1f s, %d failed or timed out%n", phase, (System.nanoTime() - startedAt) / 1e9, failures);
+        for (Latencies l : latencies) {
+            System.out.println("  " + l.summary());
+        }
+        System.out.println("  " + monitor.takeSummary());
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,101 @@
+package com.mafia.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the server's heap, CPU and connected sessions once a second from
+ * /actuator/prometheus, and keeps the peaks and the CPU average of each
+ * phase of the run.
+ */
+final class ServerMonitor {
+
+    private final HttpClient http;
+    private final URI prometheus;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "server-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private double maxHeapBytes;
+    private double cpuSum;
+    private double maxCpu;
+    private int cpuSamples;
+    private double maxSessions;
+    private boolean failed;
+
+    ServerMonitor(HttpClient http, String baseUrl) {
+        this.http = http;
+        this.prometheus = URI.create(baseUrl + "/actuator/prometheus");
+    }
+
+    void start() {
+        scheduler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void sample() {
+        String body;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(prometheus).timeout(Duration.ofSeconds(5)).build();
+            body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        } catch (Exception e) {
+            if (!failed) {
+                System.err.println("Could not read " + prometheus + ": " + e);
+                failed = true;
+            }
+            return;
+        }
+        double heap = 0;
+        double cpu = -1;
+        double sessions = 0;
+        for (String line : body.split("\n")) {
+            if (line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\"")) {
+                heap += value(line);
+            } else if (line.startsWith("process_cpu_usage")) {
+                cpu = value(line);
+            } else if (line.startsWith("mafia_sessions_connected")) {
+                sessions = value(line);
+            }
+        }
+        synchronized (this) {
+            maxHeapBytes = Math.max(maxHeapBytes, heap);
+            maxSessions = Math.max(maxSessions, sessions);
+            if (cpu >= 0) {
+                cpuSum += cpu;
+                maxCpu = Math.max(maxCpu, cpu);
+                cpuSamples++;
+            }
+        }
+    }
+
+    private static double value(String line) {
+        return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+    }
+
+    /**
+     * One report line for the samples since the last call, then start over.
+     */
+    synchronized String takeSummary() {
+        String summary = cpuSamples == 0
+            ? "server               no samples (is /actuator/prometheus exposed?)"
+            : String.format("server               heap max %.0f MB  cpu avg %.0f%%  max %.0f%%  sessions max %.0f",
+                maxHeapBytes / (1024 * 1024), 100 * cpuSum / cpuSamples, 100 * maxCpu, maxSessions);
+        maxHeapBytes = 0;
+        cpuSum = 0;
+        maxCpu = 0;
+        cpuSamples = 0;
+        maxSessions = 0;
+        return summary;
+    }
+}
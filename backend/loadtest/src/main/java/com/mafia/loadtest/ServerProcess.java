@@ -0,0 +1,86 @@
+package com.mafia.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The server under test, started from the backend's executable jar in its
+ * own JVM. Journal and checkpoint go to a temporary directory, and the
+ * server's output to loadtest-server.log.
+ */
+final class ServerProcess {
+
+    private final Process process;
+    private final Path dataDir;
+
+    private ServerProcess(Process process, Path dataDir) {
+        this.process = process;
+        this.dataDir = dataDir;
+    }
+
+    static ServerProcess start(String jar, int port, List<String> jvmArgs) throws IOException {
+        if (!new File(jar).isFile()) {
+            throw new IllegalStateException("Server jar " + jar + " not found; build the backend first (mvn package)");
+        }
+        Path dataDir = Files.createTempDirectory("mafia-loadtest");
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar);
+        command.add("--server.port=" + port);
+        command.add("--mafia.journal.dir=" + dataDir.resolve("journal"));
+        command.add("--mafia.checkpoint.file=" + dataDir.resolve("checkpoint.bin"));
+        // Per-connection console logging would measure the terminal, not the server
+        command.add("--logging.level.com.mafia=WARN");
+        command.add("--logging.level.org.springframework=WARN");
+
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(new File("loadtest-server.log"))
+            .start();
+        System.out.println("Started server (pid " + process.pid() + ") on port " + port + ", log in loadtest-server.log");
+        return new ServerProcess(process, dataDir);
+    }
+
+    /**
+     * Wait until the health endpoint answers.
+     */
+    void awaitReady(HttpClient http, String baseUrl, long timeoutMillis) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/lobby/health")).build();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Server exited with " + process.exitValue() + "; see loadtest-server.log");
+            }
+            try {
+                if (http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("Server not ready after " + timeoutMillis + " ms");
+    }
+
+    void stop() throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Could not remove " + dataDir + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.mafia.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * One simulated player: a STOMP session over native WebSocket (/ws/native)
+ * or SockJS's WebSocket transport (/ws/{server}/{session}/websocket), in
+ * plain JSON frames.
+ *
+ * Keeps the last "seq" it saw, like the frontend, so reconnects can ask for
+ * a replay. Every MESSAGE is passed to the lobby by type.
+ */
+final class SimulatedClient implements WebSocket.Listener {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String TYPE_PREFIX = "{\"type\":\"";
+
+    final SimulatedLobby lobby;
+    final String playerId;
+    private final String playerToken;
+    private final HttpClient http;
+    private final String wsBase;
+    private final boolean sockJs;
+
+    private volatile WebSocket socket;
+    private CompletableFuture<WebSocket> sends = CompletableFuture.completedFuture(null);
+    private final StringBuilder partial = new StringBuilder();
+
+    private volatile long connectStartedAt;
+    private volatile long subscribedAt;
+    private volatile Long lastSeq;
+    private volatile CompletableFuture<Long> connected = new CompletableFuture<>();
+    private volatile CompletableFuture<Long> resumed = new CompletableFuture<>();
+
+    SimulatedClient(SimulatedLobby lobby, String playerId, String playerToken, HttpClient http, String wsBase, boolean sockJs) {
+        this.lobby = lobby;
+        this.playerId = playerId;
+        this.playerToken = playerToken;
+        this.http = http;
+        this.wsBase = wsBase;
+        this.sockJs = sockJs;
+    }
+
+    /**
+     * Open the socket and send CONNECT. Completes with the nanos until CONNECTED.
+     *
+     * @param resume send the last seen seq, so only missed events are replayed
+     */
+    CompletableFuture<Long> connect(boolean resume) {
+        connected = new CompletableFuture<>();
+        resumed = new CompletableFuture<>();
+        Long seq = resume ? lastSeq : null;
+        URI uri = URI.create(sockJs
+            ? wsBase + "/ws/0/" + UUID.randomUUID().toString().substring(0, 8) + "/websocket"
+            : wsBase + "/ws/native");
+        connectStartedAt = System.nanoTime();
+        http.newWebSocketBuilder()
+            .connectTimeout(Duration.ofSeconds(30))
+            .buildAsync(uri, this)
+            .whenComplete((ws, error) -> {
+                if (error != null) {
+                    connected.completeExceptionally(error);
+                    return;
+                }
+                socket = ws;
+                send("CONNECT\naccept-version:1.2\nhost:localhost\nheart-beat:" + LoadTest.HEARTBEAT_MILLIS + ",0"
+                    + "\nplayerToken:" + playerToken + "\nlobbyId:" + lobby.id
+                    + (seq != null ? "\nlastSeq:" + seq : "") + "\n\n\0");
+            });
+        return connected;
+    }
+
+    /**
+     * Subscribe to the lobby topic, then the private queue (which triggers the
+     * snapshot or replay). Completes with the nanos until the first private frame.
+     */
+    CompletableFuture<Long> subscribe() {
+        subscribedAt = System.nanoTime();
+        send("SUBSCRIBE\nid:lobby\ndestination:/topic/lobby/" + lobby.id + "\n\n\0");
+        send("SUBSCRIBE\nid:player\ndestination:/queue/player/" + playerId + "\n\n\0");
+        return resumed;
+    }
+
+    void publish(String destination, String json) {
+        send("SEND\ndestination:" + destination + "\ncontent-type:application/json\n\n" + json + "\0");
+    }
+
+    void heartbeat() {
+        if (socket != null && connected.isDone() && !connected.isCompletedExceptionally()) {
+            send("\n");
+        }
+    }
+
+    /**
+     * Drop the connection without a close handshake, as when a proxy fails.
+     */
+    void abort() {
+        WebSocket ws = socket;
+        socket = null;
+        if (ws != null) {
+            ws.abort();
+        }
+    }
+
+    private synchronized void send(String frame) {
+        WebSocket ws = socket;
+        if (ws == null) {
+            return;
+        }
+        String text = sockJs ? sockJsMessage(frame) : frame;
+        // One outstanding send per WebSocket
+        sends = sends.handle((result, error) -> null).thenCompose(ignored -> ws.sendText(text, true));
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String text = partial.toString();
+            partial.setLength(0);
+            if (sockJs) {
+                onSockJsFrame(text);
+            } else {
+                onStompFrame(text);
+            }
+        }
+        ws.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket ws, int statusCode, String reason) {
+        connected.completeExceptionally(new IllegalStateException("Closed " + statusCode + " " + reason));
+        resumed.completeExceptionally(new IllegalStateException("Closed " + statusCode + " " + reason));
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket ws, Throwable error) {
+        connected.completeExceptionally(error);
+        resumed.completeExceptionally(error);
+    }
+
+    // SockJS frames: "o" open, "h" heartbeat, "a[...]" messages, "c[...]" close
+    private void onSockJsFrame(String text) {
+        if (text.startsWith("a")) {
+            try {
+                for (String frame : JSON.readValue(text.substring(1), String[].class)) {
+                    onStompFrame(frame);
+                }
+            } catch (JsonProcessingException e) {
+                System.err.println("Bad SockJS frame: " + e.getMessage());
+            }
+        } else if (text.startsWith("c")) {
+            onClose(socket, 1000, text);
+        }
+    }
+
+    private void onStompFrame(String frame) {
+        long now = System.nanoTime();
+        int commandEnd = frame.indexOf('\n');
+        if (commandEnd <= 0) {
+            return;  // Heartbeat
+        }
+        String command = frame.substring(0, commandEnd);
+        int headersEnd = frame.indexOf("\n\n");
+        String headers = headersEnd < 0 ? "" : frame.substring(commandEnd, headersEnd + 1);
+        switch (command) {
+            case "CONNECTED" -> connected.complete(now - connectStartedAt);
+            case "ERROR" -> {
+                IllegalStateException error = new IllegalStateException("STOMP ERROR: " + header(headers, "message"));
+                connected.completeExceptionally(error);
+                resumed.completeExceptionally(error);
+            }
+            case "MESSAGE" -> {
+                String seq = header(headers, "seq");
+                if (seq != null) {
+                    lastSeq = Long.parseLong(seq);
+                }
+                String destination = header(headers, "destination");
+                if (destination != null && destination.startsWith("/queue/player/")) {
+                    resumed.complete(now - subscribedAt);
+                }
+                lobby.onMessage(typeOf(frame, headersEnd + 2), now);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static String header(String headers, String name) {
+        int start = headers.indexOf("\n" + name + ":");
+        if (start < 0) {
+            return null;
+        }
+        start += name.length() + 2;
+        int end = headers.indexOf('\n', start);
+        return headers.substring(start, end < 0 ? headers.length() : end);
+    }
+
+    // Envelopes are encoded with the type first
+    private static String typeOf(String frame, int bodyStart) {
+        if (!frame.startsWith(TYPE_PREFIX, bodyStart)) {
+            return null;
+        }
+        int start = bodyStart + TYPE_PREFIX.length();
+        int end = frame.indexOf('"', start);
+        return end < 0 ? null : frame.substring(start, end);
+    }
+
+    private static String sockJsMessage(String frame) {
+        try {
+            return JSON.writeValueAsString(List.of(frame));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mafia.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lobby's simulated clients. The first client is the God, who drives the
+ * game; each God action is timed until every client has its PHASE_CHANGE.
+ */
+final class SimulatedLobby {
+
+    final String id;
+    final List<SimulatedClient> clients = new ArrayList<>();
+    private volatile Round round;
+
+    SimulatedLobby(String id) {
+        this.id = id;
+    }
+
+    SimulatedClient god() {
+        return clients.get(0);
+    }
+
+    void onMessage(String type, long receivedAt) {
+        Round current = round;
+        if (current == null) {
+            return;
+        }
+        if ("PHASE_CHANGE".equals(type)) {
+            current.arrived(receivedAt);
+        } else if ("ROLE_ASSIGNED".equals(type) && current.reveals != null) {
+            current.reveals.record(receivedAt - current.startedAt);
+        }
+    }
+
+    /**
+     * Random roles for everyone, the God included (the server assigns to all players).
+     * Each player's private ROLE_ASSIGNED is timed into reveals.
+     */
+    boolean assignRoles(Latencies reveals, Latencies fanOut, long timeoutMillis) throws InterruptedException {
+        int players = clients.size();
+        int mafia = Math.max(1, players / 4);
+        int doctor = players - mafia > 1 ? 1 : 0;
+        int detective = players - mafia - doctor > 1 ? 1 : 0;
+        String counts = "{\"MAFIA\":" + mafia + ",\"DOCTOR\":" + doctor + ",\"DETECTIVE\":" + detective
+            + ",\"VILLAGER\":" + (players - mafia - doctor - detective) + "}";
+        return play("/app/game/" + id + "/assign-roles", counts, reveals, fanOut, timeoutMillis);
+    }
+
+    boolean nextPhase(int round, Latencies fanOut, long timeoutMillis) throws InterruptedException {
+        return play("/app/game/" + id + "/next-phase", "{\"announcement\":\"Round " + round + "\"}", null, fanOut, timeoutMillis);
+    }
+
+    /**
+     * Send one God action and wait for the PHASE_CHANGE at every client.
+     *
+     * @return false if some client did not get it in time
+     */
+    private boolean play(String destination, String json, Latencies reveals, Latencies fanOut, long timeoutMillis)
+            throws InterruptedException {
+        Round current = new Round(clients.size(), reveals, fanOut);
+        round = current;
+        god().publish(destination, json);
+        boolean complete = current.await(timeoutMillis);
+        round = null;
+        return complete;
+    }
+
+    private static final class Round {
+        private final long startedAt = System.nanoTime();
+        private final CountDownLatch remaining;
+        private final Latencies reveals;
+        private final Latencies fanOut;
+
+        Round(int recipients, Latencies reveals, Latencies fanOut) {
+            this.remaining = new CountDownLatch(recipients);
+            this.reveals = reveals;
+            this.fanOut = fanOut;
+        }
+
+        void arrived(long receivedAt) {
+            fanOut.record(receivedAt - startedAt);
+            remaining.countDown();
+        }
+
+        boolean await(long timeoutMillis) throws InterruptedException {
+            return remaining.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mafia.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Declines the permessage-deflate WebSocket extension on /ws.
+ *
+ * Tomcat accepts permessage-deflate whenever the browser offers it, which
+ * keeps a Deflater and Inflater per connection and compresses every
+ * broadcast again for each subscriber. FrameEncoding compresses large frames
+ * once per lobby version instead. Tomcat negotiates extensions from the
+ * request headers itself, so the offer is hidden from the upgrade request
+ * rather than filtered in the handshake handler.
+ */
+@Component
+public class PermessageDeflateFilter extends OncePerRequestFilter {
+
+    private static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+    private final boolean permessageDeflate;
+
+    public PermessageDeflateFilter(@Value("${mafia.compression.permessage-deflate:false}") boolean permessageDeflate) {
+        this.permessageDeflate = permessageDeflate;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return permessageDeflate
+            || !request.getRequestURI().startsWith("/ws/")
+            || request.getHeader(EXTENSIONS_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        chain.doFilter(new HttpServletRequestWrapper(request) {
+            @Override
+            public String getHeader(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaderNames() {
+                List<String> names = Collections.list(super.getHeaderNames());
+                names.removeIf(EXTENSIONS_HEADER::equalsIgnoreCase);
+                return Collections.enumeration(names);
+            }
+        }, response);
+    }
+}
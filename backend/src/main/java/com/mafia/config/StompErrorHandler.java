@@ -0,0 +1,21 @@
+package com.mafia.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.StompSubProtocolErrorHandler;
+
+/**
+ * Puts the reason a client message was rejected in the STOMP ERROR frame.
+ * Interceptor exceptions arrive wrapped in a MessageDeliveryException whose
+ * generic message would otherwise hide why (e.g. "Invalid playerToken",
+ * "Lobby owned by ...").
+ */
+@Component
+public class StompErrorHandler extends StompSubProtocolErrorHandler {
+
+    @Override
+    public Message<byte[]> handleClientMessageProcessingError(Message<byte[]> clientMessage, Throwable ex) {
+        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+        return super.handleClientMessageProcessingError(clientMessage, cause);
+    }
+}
@@ -1,16 +1,41 @@
 package com.mafia.config;
 
+import com.mafia.messaging.FrameEncoding;
+import com.mafia.messaging.OutboundQueue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.SimpleBrokerRegistration;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 /**
  * WebSocket configuration for STOMP messaging.
  * Enables real-time communication for game events.
+ * 
+ * Each node runs its own simple broker. In cluster mode ClusterRing keeps
+ * every lobby (and so every subscriber of its topics) on one node, so no
+ * shared broker is needed.
+ * 
+ * Clients connect to /ws/native over plain WebSocket, or to /ws through
+ * SockJS when that fails. SockJS wraps every frame in a JSON array string
+ * (escaping the STOMP frame once more) and can't carry binary frames, so
+ * CBOR is native-only. Without SockJS's heartbeat frames, idle connections
+ * are kept alive and checked by STOMP heartbeats from the broker.
+ * 
+ * With spring.threads.virtual.enabled the client inbound and outbound channels
+ * run each message on its own virtual thread (Boot does the same for Tomcat
+ * requests), so handlers blocked on a lobby lane don't hold a pool thread.
+ * Messages of one session are still handled and sent in order.
  */
 @Configuration
 @EnableWebSocketMessageBroker
@@ -19,26 +44,115 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private WebSocketSecurityInterceptor securityInterceptor;
 
+    @Autowired
+    private WebSocketSubscribeHandler subscribeHandler;
+
+    @Autowired
+    private StompErrorHandler stompErrorHandler;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
+    @Autowired
+    private FrameEncoding frameEncoding;
+
+    @Lazy
+    @Autowired
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${mafia.websocket.heartbeat-ms:25000}")
+    private long heartbeatMillis;
+
+    @Value("${mafia.websocket.text-buffer-size:8192}")
+    private int textBufferSize;
+
+    @Value("${mafia.websocket.binary-buffer-size:1024}")
+    private int binaryBufferSize;
+
+    @Value("${mafia.websocket.idle-timeout-ms:90000}")
+    private long idleTimeoutMillis;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable simple broker for /topic (broadcasts) and /queue (private messages)
-        config.enableSimpleBroker("/topic", "/queue");
+        SimpleBrokerRegistration broker = config.enableSimpleBroker("/topic", "/queue");
+        if (heartbeatMillis > 0) {
+            // Send a heartbeat after heartbeatMillis without frames, and drop clients silent for three intervals
+            broker.setHeartbeatValue(new long[] {heartbeatMillis, heartbeatMillis})
+                  .setTaskScheduler(messageBrokerTaskScheduler);
+        }
         
         // Prefix for client-to-server messages
         config.setApplicationDestinationPrefixes("/app");
+        
+        // Send to each session in publish order (lobby events carry increasing seq numbers)
+        config.setPreservePublishOrder(true);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Plain WebSocket endpoint, preferred by clients
+        registry.addEndpoint("/ws/native")
+                .setAllowedOriginPatterns("*");
         // WebSocket endpoint at /ws with SockJS fallback
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        registry.setErrorHandler(stompErrorHandler);
+        // Handle each session's messages in the order they arrived
+        registry.setPreserveReceiveOrder(true);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        // Add security interceptor to validate tokens on CONNECT
-        registration.interceptors(securityInterceptor);
+        // Add security interceptor to validate tokens on CONNECT,
+        // and resume players once their subscriptions are registered
+        registration.interceptors(securityInterceptor, subscribeHandler);
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Transcode frames for sessions that negotiated CBOR
+        registration.interceptors(frameEncoding);
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("ws-outbound-"));
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session send queues, so slow clients are degraded or dropped instead of stalling others
+        registration.addDecoratorFactory(outboundQueue);
+        // Outermost, so it sees the transport session (SockJS or native)
+        registration.addDecoratorFactory(frameEncoding);
+    }
+
+    /**
+     * Tomcat's per-connection WebSocket buffers. Inbound messages are
+     * assembled in buffers of these sizes (allocated for every connection),
+     * and a larger client message closes the connection. Clients only send
+     * small text frames (CONNECT, SUBSCRIBE, SEND), so the binary buffer is
+     * kept small.
+     */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(textBufferSize);
+        container.setMaxBinaryMessageBufferSize(binaryBufferSize);
+        // Closes connections that never get as far as negotiating heartbeats
+        container.setMaxSessionIdleTimeout(idleTimeoutMillis);
+        return container;
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String prefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+        executor.setVirtualThreads(true);
+        return executor;
     }
 }
@@ -1,6 +1,7 @@
 package com.mafia.config;
 
 import com.mafia.model.Player;
+import com.mafia.service.GameMetrics;
 import com.mafia.service.LobbyService;
 import com.mafia.store.InMemoryStore;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,9 @@ public class WebSocketDisconnectHandler {
     @Autowired
     private LobbyService lobbyService;
 
+    @Autowired
+    private GameMetrics metrics;
+
     /**
      * Handle WebSocket disconnect events.
      * Mark player as disconnected (don't remove them).
@@ -35,19 +39,19 @@ public class WebSocketDisconnectHandler {
         String wsSessionId = headerAccessor.getSessionId();
 
         System.out.println("WebSocket DISCONNECT event for session: " + wsSessionId);
+        metrics.stompCommand("DISCONNECT");
 
         if (wsSessionId != null) {
-            // Find player by WebSocket session
-            Player player = store.getPlayerByWebSocketSession(wsSessionId);
+            // Find lobby by WebSocket session
             String lobbyId = store.getLobbyIdByWebSocketSession(wsSessionId);
 
-            if (player != null && lobbyId != null) {
-                // Mark player as disconnected (don't remove!)
-                lobbyService.markPlayerDisconnected(lobbyId, player);
-                
-                // Clean up WebSocket session mapping
-                store.removeWebSocketSession(wsSessionId);
+            // Mark player as disconnected (don't remove!)
+            Player player = lobbyId == null ? null : lobbyService.markPlayerDisconnected(lobbyId, wsSessionId);
+
+            // Clean up WebSocket session mapping
+            store.removeWebSocketSession(wsSessionId);
 
+            if (player != null) {
                 System.out.println("WebSocket DISCONNECT: Player " + player.getId() + " (" + player.getName() + ") marked as disconnected");
             } else {
                 System.out.println("WebSocket DISCONNECT: No player found for session " + wsSessionId);
@@ -1,6 +1,9 @@
 package com.mafia.config;
 
+import com.mafia.messaging.FrameEncoding;
 import com.mafia.model.Player;
+import com.mafia.service.ClusterRing;
+import com.mafia.service.GameMetrics;
 import com.mafia.service.LobbyService;
 import com.mafia.store.InMemoryStore;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +21,10 @@ import java.util.UUID;
 /**
  * Intercepts WebSocket messages to:
  * - Validate playerToken on CONNECT
+ * - In cluster mode, reject CONNECTs for lobbies owned by another node
  * - Mark player as connected and associate WebSocket session
+ * - Remember the client's last seen event sequence (lastSeq header) for replay
+ * - Negotiate the frame encoding and compression (encoding, compression headers)
  * - Restrict subscriptions to authorized destinations
  */
 @Component
@@ -30,12 +36,23 @@ public class WebSocketSecurityInterceptor implements ChannelInterceptor {
     @Lazy
     @Autowired
     private LobbyService lobbyService;
+    
+    @Autowired
+    private ClusterRing clusterRing;
+    
+    @Autowired
+    private FrameEncoding frameEncoding;
+    
+    @Autowired
+    private GameMetrics metrics;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
         
         if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+            metrics.stompCommand("CONNECT");
+            
             // Extract playerToken from CONNECT headers
             String playerToken = accessor.getFirstNativeHeader("playerToken");
             
@@ -44,28 +61,50 @@ public class WebSocketSecurityInterceptor implements ChannelInterceptor {
                 throw new IllegalArgumentException("Missing playerToken in CONNECT");
             }
             
-            // Validate token and get player
-            Player player = store.getPlayerByToken(playerToken);
+            // Validate token and get lobby for this player
+            String lobbyId = store.getLobbyIdByToken(playerToken);
+            String wsSessionId = accessor.getSessionId();
+            
+            // Tokens are only known on the lobby's owner; tell the client where to go
+            String requestedLobby = accessor.getFirstNativeHeader("lobbyId");
+            if (lobbyId == null && requestedLobby != null && !clusterRing.isLocal(requestedLobby)) {
+                String owner = clusterRing.ownerOf(requestedLobby);
+                System.err.println("WebSocket CONNECT rejected: Lobby " + requestedLobby + " is owned by " + owner);
+                throw new IllegalArgumentException("Lobby owned by " + owner);
+            }
+            
+            // Mark player as connected (but don't send snapshot yet - wait for subscription)
+            Player player = lobbyId == null ? null : lobbyService.markPlayerConnected(lobbyId, playerToken, wsSessionId);
             if (player == null) {
                 System.err.println("WebSocket CONNECT rejected: Invalid playerToken: " + playerToken);
                 throw new IllegalArgumentException("Invalid playerToken - player not found. Please rejoin the lobby.");
             }
             
-            // Get lobby ID for this player
-            String lobbyId = store.getLobbyIdByToken(playerToken);
-            String wsSessionId = accessor.getSessionId();
+            // Store player token in session attributes for later use during SUBSCRIBE,
+            // and the player's id and seat for night actions (submitted off the lobby's lane)
+            accessor.getSessionAttributes().put("playerToken", playerToken);
+            accessor.getSessionAttributes().put("playerId", player.getId());
+            accessor.getSessionAttributes().put("seat", player.getSession().getSeat());
             
-            // Mark player as connected (but don't send snapshot yet - wait for subscription)
-            lobbyService.markPlayerConnected(lobbyId, player, wsSessionId);
-            store.associateWebSocketSession(wsSessionId, lobbyId);
+            // Last event sequence the client saw before reconnecting; used to replay only missed events
+            String lastSeq = accessor.getFirstNativeHeader("lastSeq");
+            if (lastSeq != null && !lastSeq.isEmpty()) {
+                try {
+                    accessor.getSessionAttributes().put("lastSeq", Long.parseLong(lastSeq));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring invalid lastSeq header: " + lastSeq);
+                }
+            }
             
-            // Store player token in session attributes for later use during SUBSCRIBE
-            accessor.getSessionAttributes().put("playerToken", playerToken);
+            // Plain JSON unless the client asked for CBOR and/or compression
+            frameEncoding.negotiate(wsSessionId, accessor.getFirstNativeHeader(FrameEncoding.ENCODING_HEADER),
+                accessor.getFirstNativeHeader(FrameEncoding.COMPRESSION_HEADER), accessor.getSessionAttributes());
             
             System.out.println("WebSocket CONNECT: Player " + player.getId() + " (" + player.getName() + ") connected with session " + wsSessionId);
         }
         
         if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            metrics.stompCommand("SUBSCRIBE");
             String destination = accessor.getDestination();
             System.out.println("WebSocket SUBSCRIBE: " + destination + " by session " + accessor.getSessionId());
             // Snapshot will be sent via SessionSubscribeEvent listener
@@ -1,50 +1,69 @@
 package com.mafia.config;
 
-import com.mafia.model.Player;
 import com.mafia.service.LobbyService;
 import com.mafia.store.InMemoryStore;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
 import org.springframework.stereotype.Component;
-import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
-import java.util.UUID;
+import java.util.Map;
 
 /**
- * Handles WebSocket subscription events.
- * Sends game snapshot when player subscribes to their personal queue.
+ * Handles WebSocket subscriptions.
+ * Brings a player up to date when they subscribe to their personal queue:
+ * missed events are replayed if possible, otherwise a game snapshot is sent.
+ * 
+ * Runs after the broker has handled the SUBSCRIBE (rather than on
+ * SessionSubscribeEvent, which fires before the subscription is registered),
+ * so the first frames sent can't be lost.
  */
 @Component
-public class WebSocketSubscribeHandler {
+public class WebSocketSubscribeHandler implements ExecutorChannelInterceptor {
 
     @Autowired
     private InMemoryStore store;
 
+    @Lazy
     @Autowired
     private LobbyService lobbyService;
 
     /**
-     * Handle subscription events.
-     * When a player subscribes to their /queue/player/{id}, send them the game snapshot.
+     * Handle subscriptions once the broker has registered them.
+     * When a player subscribes to their /queue/player/{id}, replay missed events or send the game snapshot.
      */
-    @EventListener
-    public void handleSubscribe(SessionSubscribeEvent event) {
-        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof AbstractBrokerMessageHandler)) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (!StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return;
+        }
         String destination = accessor.getDestination();
         String wsSessionId = accessor.getSessionId();
 
-        System.out.println("SessionSubscribeEvent: " + destination + " by session " + wsSessionId);
+        System.out.println("Subscribed: " + destination + " by session " + wsSessionId);
 
-        // Send game snapshot when player subscribes to their personal queue
+        // Resume (replay or snapshot) when player subscribes to their personal queue
         if (destination != null && destination.startsWith("/queue/player/")) {
-            // Get player from session mapping
+            // Get lobby from session mapping; player is resolved on the lobby's lane
             String lobbyId = store.getLobbyIdByWebSocketSession(wsSessionId);
-            Player player = store.getPlayerByWebSocketSession(wsSessionId);
 
-            if (lobbyId != null && player != null) {
-                System.out.println("Sending GAME_SNAPSHOT to " + player.getName() + " after subscription to " + destination);
-                lobbyService.sendGameSnapshotToPlayer(lobbyId, player);
+            if (lobbyId != null) {
+                // lastSeq from CONNECT applies to the first resume only
+                Map<String, Object> attributes = accessor.getSessionAttributes();
+                Long lastSeq = attributes == null ? null : (Long) attributes.remove("lastSeq");
+                System.out.println("Resuming session " + wsSessionId + " after subscription to " + destination
+                        + (lastSeq != null ? " from seq " + lastSeq : ""));
+                lobbyService.resumeSession(lobbyId, wsSessionId, lastSeq);
             } else {
                 System.out.println("Could not find player/lobby for session " + wsSessionId);
             }
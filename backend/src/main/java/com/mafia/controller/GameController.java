@@ -1,14 +1,18 @@
 package com.mafia.controller;
 
+import com.mafia.model.enums.NightActionType;
 import com.mafia.model.enums.Role;
 import com.mafia.service.GameService;
+import com.mafia.service.LobbyService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Controller;
 
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * WebSocket controller for real-time game actions.
@@ -20,6 +24,9 @@ public class GameController {
     @Autowired
     private GameService gameService;
     
+    @Autowired
+    private LobbyService lobbyService;
+    
     /**
      * God assigns roles randomly.
      * Message sent to /app/game/{lobbyId}/assign-roles
@@ -47,11 +54,65 @@ public class GameController {
         gameService.nextPhase(lobbyId, announcement);
     }
     
+    /**
+     * Client detected a gap in PLAYER_LIST_DELTA sequence numbers.
+     * Replies with the full player list on the sender's private queue.
+     * Message sent to /app/lobby/{lobbyId}/resync
+     */
+    @MessageMapping("/lobby/{lobbyId}/resync")
+    public void resyncPlayerList(@DestinationVariable String lobbyId, @Header("simpSessionId") String wsSessionId) {
+        lobbyService.sendPlayerListToPlayer(lobbyId, wsSessionId);
+    }
+    
     // Reconnect is now automatic - snapshot sent on WebSocket connect
     // No manual /app/game/reconnect endpoint needed
     
+    /**
+     * Mafia member votes to kill a player tonight.
+     * Message sent to /app/game/{lobbyId}/night/kill with {"targetId": "..."}
+     */
+    @MessageMapping("/game/{lobbyId}/night/kill")
+    public void kill(@DestinationVariable String lobbyId, @Payload Map<String, String> payload,
+                     @Header("simpSessionId") String wsSessionId,
+                     @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+        submitNightAction(lobbyId, payload, wsSessionId, sessionAttributes, NightActionType.KILL);
+    }
+    
+    /**
+     * Doctor protects a player tonight.
+     * Message sent to /app/game/{lobbyId}/night/save with {"targetId": "..."}
+     */
+    @MessageMapping("/game/{lobbyId}/night/save")
+    public void save(@DestinationVariable String lobbyId, @Payload Map<String, String> payload,
+                     @Header("simpSessionId") String wsSessionId,
+                     @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+        submitNightAction(lobbyId, payload, wsSessionId, sessionAttributes, NightActionType.SAVE);
+    }
+    
+    /**
+     * Detective investigates a player tonight.
+     * Message sent to /app/game/{lobbyId}/night/investigate with {"targetId": "..."}
+     */
+    @MessageMapping("/game/{lobbyId}/night/investigate")
+    public void investigate(@DestinationVariable String lobbyId, @Payload Map<String, String> payload,
+                            @Header("simpSessionId") String wsSessionId,
+                            @Header("simpSessionAttributes") Map<String, Object> sessionAttributes) {
+        submitNightAction(lobbyId, payload, wsSessionId, sessionAttributes, NightActionType.INVESTIGATE);
+    }
+    
+    // Submitted straight into the lobby's night action buffer; resolved when the God ends the night
+    private void submitNightAction(String lobbyId, Map<String, String> payload, String wsSessionId,
+                                   Map<String, Object> sessionAttributes, NightActionType type) {
+        String target = payload.get("targetId");
+        try {
+            UUID targetId = UUID.fromString(target == null ? "" : target);
+            gameService.submitNightAction(lobbyId, wsSessionId, sessionAttributes, type, targetId);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring " + type + " with invalid targetId " + target + " in lobby " + lobbyId);
+        }
+    }
+    
     // TODO: Add handlers for:
-    // - Night actions (Mafia kill, Doctor save, Detective investigate)
     // - Day voting
     // - Chat messages
 }
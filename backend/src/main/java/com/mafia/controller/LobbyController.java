@@ -1,29 +1,43 @@
 package com.mafia.controller;
 
+import com.mafia.dto.AnnouncementPage;
 import com.mafia.dto.CreateLobbyRequest;
 import com.mafia.dto.JoinLobbyRequest;
+import com.mafia.dto.LobbyNodeResponse;
 import com.mafia.dto.LobbyResponse;
+import com.mafia.service.ClusterRing;
 import com.mafia.service.LobbyService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.UUID;
+import java.net.URI;
 
 /**
  * REST controller for lobby operations.
  * 
  * IMPORTANT: Does NOT expose player roles.
  * Only provides non-sensitive lobby information.
+ * 
+ * In cluster mode, calls for a lobby owned by another node get a
+ * 307 redirect to the same path on the owner.
  */
 @RestController
 @RequestMapping("/api/lobby")
 @CrossOrigin(origins = "*")
 public class LobbyController {
     
+    private static final int MAX_ANNOUNCEMENT_PAGE = 100;
+    
     @Autowired
     private LobbyService lobbyService;
-
+    
+    @Autowired
+    private ClusterRing clusterRing;
+    
     /**
      * Health check endpoint.
      */
@@ -42,6 +56,7 @@ public class LobbyController {
     public ResponseEntity<LobbyResponse> createLobby(@RequestBody CreateLobbyRequest request) {
         try {
             LobbyResponse response = lobbyService.createLobby(request.getGodName());
+            response.setNode(clusterRing.getSelf());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -54,13 +69,18 @@ public class LobbyController {
      * If playerToken is provided and valid, reconnects existing player.
      */
     @PostMapping("/join")
-    public ResponseEntity<LobbyResponse> joinLobby(@RequestBody JoinLobbyRequest request) {
+    public ResponseEntity<LobbyResponse> joinLobby(@RequestBody JoinLobbyRequest request, HttpServletRequest http) {
+        ResponseEntity<LobbyResponse> redirect = redirectToOwner(request.getLobbyId(), http);
+        if (redirect != null) {
+            return redirect;
+        }
         try {
             LobbyResponse response = lobbyService.joinLobby(
                 request.getLobbyId(), 
                 request.getPlayerName(),
                 request.getPlayerToken()
             );
+            response.setNode(clusterRing.getSelf());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
@@ -72,12 +92,62 @@ public class LobbyController {
      * Does NOT include player roles.
      */
     @GetMapping("/{lobbyId}")
-    public ResponseEntity<LobbyResponse> getLobbyInfo(@PathVariable String lobbyId) {
+    public ResponseEntity<byte[]> getLobbyInfo(@PathVariable String lobbyId, HttpServletRequest http) {
+        ResponseEntity<byte[]> redirect = redirectToOwner(lobbyId, http);
+        if (redirect != null) {
+            return redirect;
+        }
         try {
-            LobbyResponse response = lobbyService.getLobbyInfo(lobbyId);
-            return ResponseEntity.ok(response);
+            // Pre-encoded JSON, cached per lobby version
+            byte[] response = lobbyService.getLobbyInfo(lobbyId);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
     }
+    
+    /**
+     * Get a page of announcement history, oldest first.
+     * Snapshots only carry the latest announcements; page back with before = start.
+     */
+    @GetMapping("/{lobbyId}/announcements")
+    public ResponseEntity<AnnouncementPage> getAnnouncements(
+            @PathVariable String lobbyId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit,
+            HttpServletRequest http) {
+        ResponseEntity<AnnouncementPage> redirect = redirectToOwner(lobbyId, http);
+        if (redirect != null) {
+            return redirect;
+        }
+        try {
+            int pageSize = Math.max(1, Math.min(limit, MAX_ANNOUNCEMENT_PAGE));
+            return ResponseEntity.ok(lobbyService.getAnnouncements(lobbyId, before, pageSize));
+        } catch (Exception e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Get the node owning a lobby. Answered by any node without a redirect,
+     * so clients can open their WebSocket on the owner.
+     */
+    @GetMapping("/{lobbyId}/node")
+    public ResponseEntity<LobbyNodeResponse> getLobbyNode(@PathVariable String lobbyId) {
+        return ResponseEntity.ok(new LobbyNodeResponse(lobbyId.toUpperCase(), clusterRing.ownerOf(lobbyId)));
+    }
+    
+    /**
+     * 307 to the same path on the lobby's owner, or null if the lobby is local.
+     * 307 keeps the method and body, so a POST /join is replayed on the owner.
+     */
+    private <T> ResponseEntity<T> redirectToOwner(String lobbyId, HttpServletRequest request) {
+        if (lobbyId == null || clusterRing.isLocal(lobbyId)) {
+            return null;
+        }
+        String query = request.getQueryString();
+        URI location = URI.create(clusterRing.ownerOf(lobbyId) + request.getRequestURI()
+            + (query == null ? "" : "?" + query));
+        return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(location).build();
+    }
 }
@@ -0,0 +1,18 @@
+package com.mafia.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A page of announcement history, oldest first.
+ * Fetch the next older page with before = start.
+ */
+@Getter
+@AllArgsConstructor
+public class AnnouncementPage {
+    private long start;                 // Index of the first announcement in this page
+    private List<String> announcements;
+    private boolean hasMore;            // Older announcements are still available
+}
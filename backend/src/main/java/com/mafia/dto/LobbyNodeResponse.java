@@ -0,0 +1,15 @@
+package com.mafia.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The node owning a lobby. Node is null when clustering is disabled
+ * (connect to the same server).
+ */
+@Getter
+@AllArgsConstructor
+public class LobbyNodeResponse {
+    private String lobbyId;
+    private String node;
+}
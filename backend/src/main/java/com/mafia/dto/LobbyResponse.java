@@ -19,6 +19,7 @@ public class LobbyResponse {
     private String playerToken;  // Returned only on create/join
     private UUID playerId;       // Returned only on create/join
     private List<PlayerInfo> players;
+    private String node;         // Base URL of the node owning the lobby (cluster mode only)
     
     @Getter
     @AllArgsConstructor
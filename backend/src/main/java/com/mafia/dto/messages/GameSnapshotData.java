@@ -1,5 +1,6 @@
 package com.mafia.dto.messages;
 
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import com.mafia.model.enums.GamePhase;
 import com.mafia.model.enums.Role;
 import lombok.AllArgsConstructor;
@@ -13,18 +14,35 @@ import java.util.UUID;
  * Data payload for GAME_SNAPSHOT message.
  * Full game state sent to player on WebSocket connect/reconnect.
  * Wrapped in WebSocketMessage envelope.
+ * 
+ * Only yourRole and alive are per-recipient; the lobby-wide part is unwrapped
+ * into the same JSON object, so it can be encoded once per lobby version
+ * (see SnapshotTemplate).
  */
 @Getter
 @Builder
 @AllArgsConstructor
 public class GameSnapshotData {
-    private String lobbyId;
-    private GamePhase currentPhase;
-    private int dayCount;
     private Role yourRole;
     private boolean alive;
-    private List<PlayerSnapshot> players;
-    private List<String> announcements;
+    @JsonUnwrapped
+    private Shared shared;
+    
+    /**
+     * Lobby-wide part of the snapshot, identical for every recipient.
+     */
+    @Getter
+    @Builder
+    @AllArgsConstructor
+    public static class Shared {
+        private String lobbyId;
+        private GamePhase currentPhase;
+        private int dayCount;
+        private List<PlayerSnapshot> players;
+        private long playerListSequence;  // Player list deltas continue from here
+        private List<String> announcements;  // Latest announcements only
+        private long announcementsStart;      // Index of the first one; older pages via REST
+    }
     
     @Getter
     @AllArgsConstructor
@@ -8,18 +8,19 @@ package com.mafia.dto.messages;
  */
 public enum MessageType {
     // Lobby messages (broadcast to /topic/lobby/{id})
-    PLAYER_LIST_UPDATE,    // Player joined/left/connected/disconnected
+    PLAYER_LIST_UPDATE,    // Full player list (resync or explicit refresh)
+    PLAYER_LIST_DELTA,     // Only the players that joined/connected/disconnected/changed
     PHASE_CHANGE,          // Game phase changed
     GAME_ANNOUNCEMENT,     // God made an announcement
+    PLAYER_ELIMINATED,     // A player was eliminated
     
     // Player messages (sent to /queue/player/{id})
     GAME_SNAPSHOT,         // Full game state on connect/reconnect
     ROLE_ASSIGNED,         // Your role has been assigned
+    NIGHT_ACTION_RESULT,   // Result of your night action
     
     // Future message types
     // VOTE_UPDATE,        // Voting status changed
-    // NIGHT_ACTION_RESULT,// Result of your night action
     // CHAT_MESSAGE,       // Chat message
-    // PLAYER_ELIMINATED,  // A player was eliminated
     // GAME_ENDED,         // Game finished with winner
 }
@@ -0,0 +1,23 @@
+package com.mafia.dto.messages;
+
+import com.mafia.model.enums.NightActionType;
+import com.mafia.model.enums.NightOutcome;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Data payload for NIGHT_ACTION_RESULT message.
+ * Private message sent to each player whose night action counted, when the
+ * night is resolved. Mafia members all get the Mafia's combined kill.
+ * Wrapped in WebSocketMessage envelope.
+ */
+@Getter
+@AllArgsConstructor
+public class NightActionResultData {
+    private NightActionType action;
+    private UUID targetId;
+    private NightOutcome outcome;
+    private String message;
+}
@@ -0,0 +1,19 @@
+package com.mafia.dto.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * Data payload for PLAYER_ELIMINATED message.
+ * Broadcast to all players when a player dies. Does not reveal their role.
+ * Wrapped in WebSocketMessage envelope.
+ */
+@Getter
+@AllArgsConstructor
+public class PlayerEliminatedData {
+    private UUID playerId;
+    private String name;
+    private String announcement;
+}
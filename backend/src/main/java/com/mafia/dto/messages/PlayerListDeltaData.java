@@ -0,0 +1,20 @@
+package com.mafia.dto.messages;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Data payload for PLAYER_LIST_DELTA message.
+ * Carries only the players that changed since the previous delta.
+ * Clients apply it when sequence is exactly one past their last one,
+ * otherwise they request a full PLAYER_LIST_UPDATE via /app/lobby/{id}/resync.
+ * Wrapped in WebSocketMessage envelope.
+ */
+@Getter
+@AllArgsConstructor
+public class PlayerListDeltaData {
+    private long sequence;
+    private List<PlayerListUpdateData.PlayerInfo> changed;
+}
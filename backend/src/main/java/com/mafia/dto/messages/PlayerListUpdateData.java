@@ -8,12 +8,15 @@ import java.util.UUID;
 
 /**
  * Data payload for PLAYER_LIST_UPDATE message.
- * Broadcast when player list changes (join/leave/connect/disconnect).
+ * Full player list at a player list sequence number.
+ * Sent on resync requests and by explicit full broadcasts; routine changes
+ * go out as PLAYER_LIST_DELTA.
  * Wrapped in WebSocketMessage envelope.
  */
 @Getter
 @AllArgsConstructor
 public class PlayerListUpdateData {
+    private long sequence;
     private List<PlayerInfo> players;
     
     @Getter
@@ -10,6 +10,8 @@ import java.util.UUID;
  * Data payload for ROLE_ASSIGNED message.
  * Private message sent to a player with their role.
  * Wrapped in WebSocketMessage envelope.
+ * 
+ * Frames are rendered by RoleAssignedTemplate, which must produce the same JSON.
  */
 @Getter
 @AllArgsConstructor
@@ -0,0 +1,89 @@
+package com.mafia.messaging;
+
+import com.mafia.service.LobbyExecutor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses bursts of lobby broadcasts into one send per flush window.
+ *
+ * The first request for a (lobby, kind) marks it dirty and schedules a flush
+ * on the lobby's lane after the window; further requests inside the window
+ * are counted as collapsed. The flush reads lobby state when it runs, so the
+ * single send carries every change made during the window.
+ */
+@Component
+public class BroadcastCoalescer {
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    private final long windowMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "broadcast-coalescer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // "lobbyId:kind" keys with a flush already scheduled
+    private final Map<String, Boolean> dirty = new ConcurrentHashMap<>();
+
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    public BroadcastCoalescer(@Value("${mafia.broadcast.coalesce-window-ms:50}") long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Request a broadcast of the given kind for a lobby.
+     * With a window of 0 the flush runs immediately.
+     */
+    public void request(String lobbyId, String kind, Runnable flush) {
+        requested.increment();
+        if (windowMs <= 0) {
+            flushed.increment();
+            lobbyExecutor.run(lobbyId, flush);
+            return;
+        }
+
+        String key = lobbyId.toUpperCase() + ":" + kind;
+        if (dirty.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;  // Already scheduled; this request rides along
+        }
+        scheduler.schedule(() -> lobbyExecutor.execute(lobbyId, () -> {
+            // Clear before flushing so changes made from here on schedule a new flush
+            dirty.remove(key);
+            flushed.increment();
+            flush.run();
+        }), windowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Snapshot of the coalescing counters.
+     * Collapsed counts requests that were folded into another request's flush.
+     */
+    public Stats getStats() {
+        long req = requested.sum();
+        long done = flushed.sum();
+        int pending = dirty.size();
+        return new Stats(req, done, Math.max(0, req - done - pending), pending, windowMs);
+    }
+
+    public record Stats(long requested, long flushed, long collapsed, int pending, long windowMs) {}
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
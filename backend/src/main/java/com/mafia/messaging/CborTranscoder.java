@@ -0,0 +1,294 @@
+package com.mafia.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transcodes encoded JSON frames to CBOR (RFC 8949).
+ *
+ * Two things make the output smaller than a plain CBOR copy of the JSON:
+ * - object keys listed in KEYS are written as their index (one byte for the
+ *   first 24) instead of a string
+ * - lowercase UUID strings are written as tag 37 over their 16 bytes
+ * Maps and arrays get definite lengths. The output is valid CBOR for any
+ * decoder; only the key indices and tag 37 need mapping back.
+ *
+ * Keep KEYS in sync with frontend: src/services/cbor.ts, and only append to it.
+ */
+public final class CborTranscoder {
+
+    static final List<String> KEYS = List.of(
+        "type", "data", "sequence", "players", "changed", "id", "name", "alive",
+        "connected", "god", "newPhase", "dayCount", "announcement", "yourRole",
+        "lobbyId", "currentPhase", "playerListSequence", "announcements",
+        "announcementsStart", "playerId", "role", "message", "timestamp",
+        "action", "targetId", "outcome");
+
+    private static final Map<String, Integer> KEY_INDEX = new HashMap<>();
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG_UUID = 37;
+
+    static {
+        for (int i = 0; i < KEYS.size(); i++) {
+            KEY_INDEX.put(KEYS.get(i), i);
+        }
+    }
+
+    private CborTranscoder() {
+    }
+
+    /**
+     * Transcode one JSON document.
+     */
+    public static byte[] transcode(byte[] json) {
+        Output out = new Output(json.length);
+        // Open containers: where each header byte was reserved, how many entries followed, and the kind
+        int[] starts = new int[16];
+        int[] counts = new int[16];
+        boolean[] maps = new boolean[16];
+        int depth = 0;
+
+        try (JsonParser parser = JSON.createParser(json)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                    depth--;
+                    out.patchHead(starts[depth], token == JsonToken.END_OBJECT ? MAP : ARRAY, counts[depth]);
+                    continue;
+                }
+                if (token == JsonToken.FIELD_NAME) {
+                    counts[depth - 1]++;
+                    Integer index = KEY_INDEX.get(parser.currentName());
+                    if (index != null) {
+                        out.head(UNSIGNED, index);
+                    } else {
+                        out.text(parser.currentName());
+                    }
+                    continue;
+                }
+                // A value: counts as an entry if it is in an array
+                if (depth > 0 && !maps[depth - 1]) {
+                    counts[depth - 1]++;
+                }
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        if (depth == starts.length) {
+                            starts = Arrays.copyOf(starts, depth * 2);
+                            counts = Arrays.copyOf(counts, depth * 2);
+                            maps = Arrays.copyOf(maps, depth * 2);
+                        }
+                        starts[depth] = out.reserve();
+                        counts[depth] = 0;
+                        maps[depth] = token == JsonToken.START_OBJECT;
+                        depth++;
+                    }
+                    case VALUE_STRING -> {
+                        char[] chars = parser.getTextCharacters();
+                        int offset = parser.getTextOffset();
+                        int length = parser.getTextLength();
+                        if (isUuid(chars, offset, length)) {
+                            out.uuid(chars, offset);
+                        } else {
+                            out.text(chars, offset, length);
+                        }
+                    }
+                    case VALUE_NUMBER_INT -> {
+                        long value = parser.getLongValue();
+                        if (value >= 0) {
+                            out.head(UNSIGNED, value);
+                        } else {
+                            out.head(NEGATIVE, -1 - value);
+                        }
+                    }
+                    case VALUE_NUMBER_FLOAT -> out.float64(parser.getDoubleValue());
+                    case VALUE_TRUE -> out.write(0xf5);
+                    case VALUE_FALSE -> out.write(0xf4);
+                    case VALUE_NULL -> out.write(0xf6);
+                    default -> throw new IllegalStateException("Unexpected JSON token " + token);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to transcode frame", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The envelope's message type, read from the start of a transcoded body,
+     * or null if the body doesn't start like a transcoded envelope.
+     *
+     * @param head frame bytes as ISO-8859-1 characters
+     * @param bodyStart index of the first body byte
+     */
+    static String peekType(String head, int bodyStart) {
+        // Map header, key 0 ("type"), then a short text string
+        if (head.length() < bodyStart + 3 || (head.charAt(bodyStart) >> 5) != MAP || head.charAt(bodyStart + 1) != 0) {
+            return null;
+        }
+        int textHead = head.charAt(bodyStart + 2);
+        if ((textHead >> 5) != TEXT || (textHead & 0x1f) >= 24) {
+            return null;
+        }
+        int start = bodyStart + 3;
+        int end = start + (textHead & 0x1f);
+        return end <= head.length() ? head.substring(start, end) : null;
+    }
+
+    // Canonical lowercase form only, so the string comes back unchanged
+    private static boolean isUuid(char[] chars, int offset, int length) {
+        if (length != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = chars[offset + i];
+            boolean ok = (i == 8 || i == 13 || i == 18 || i == 23)
+                ? c == '-'
+                : (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Output {
+        private byte[] buf;
+        private int len;
+
+        Output(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        void head(int major, long value) {
+            ensure(9);
+            int m = major << 5;
+            if (value < 24) {
+                buf[len++] = (byte) (m | value);
+            } else if (value < 0x100) {
+                buf[len++] = (byte) (m | 24);
+                buf[len++] = (byte) value;
+            } else if (value < 0x10000) {
+                buf[len++] = (byte) (m | 25);
+                putBigEndian(value, 2);
+            } else if (value < 0x100000000L) {
+                buf[len++] = (byte) (m | 26);
+                putBigEndian(value, 4);
+            } else {
+                buf[len++] = (byte) (m | 27);
+                putBigEndian(value, 8);
+            }
+        }
+
+        void text(char[] chars, int offset, int length) {
+            // ASCII is the common case and needs no encoding pass
+            boolean ascii = true;
+            for (int i = offset; i < offset + length && ascii; i++) {
+                ascii = chars[i] < 0x80;
+            }
+            if (!ascii) {
+                text(new String(chars, offset, length));
+                return;
+            }
+            head(TEXT, length);
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buf[len++] = (byte) chars[offset + i];
+            }
+        }
+
+        void text(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            head(TEXT, bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, len, bytes.length);
+            len += bytes.length;
+        }
+
+        void uuid(char[] chars, int offset) {
+            head(6, TAG_UUID);
+            write(0x50);  // Byte string of 16
+            ensure(16);
+            int high = -1;
+            for (int i = 0; i < 36; i++) {
+                char c = chars[offset + i];
+                if (c == '-') {
+                    continue;
+                }
+                int digit = Character.digit(c, 16);
+                if (high < 0) {
+                    high = digit;
+                } else {
+                    buf[len++] = (byte) (high << 4 | digit);
+                    high = -1;
+                }
+            }
+        }
+
+        void float64(double value) {
+            write(0xfb);
+            ensure(8);
+            putBigEndian(Double.doubleToLongBits(value), 8);
+        }
+
+        /**
+         * Reserve one byte for a container header and return its position.
+         */
+        int reserve() {
+            write(0);
+            return len - 1;
+        }
+
+        /**
+         * Fill in a reserved header, shifting the container's contents when
+         * the count needs more than the one reserved byte.
+         */
+        void patchHead(int pos, int major, int count) {
+            if (count < 24) {
+                buf[pos] = (byte) (major << 5 | count);
+                return;
+            }
+            int extra = count < 0x100 ? 1 : count < 0x10000 ? 2 : 4;
+            ensure(extra);
+            System.arraycopy(buf, pos + 1, buf, pos + 1 + extra, len - pos - 1);
+            int end = len + extra;
+            len = pos;
+            head(major, count);
+            len = end;
+        }
+
+        private void putBigEndian(long value, int bytes) {
+            for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+                buf[len++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.mafia.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Per-session wire format of MESSAGE frames.
+ *
+ * Clients negotiate it with CONNECT headers:
+ * - "encoding:cbor" switches to CborTranscoder output. CBOR needs binary
+ *   WebSocket frames, so it is only granted to native WebSocket sessions,
+ *   not SockJS ones.
+ * - "compression:deflate" deflates bodies of at least threshold-bytes. On
+ *   native WebSocket the compressed bytes go out in a binary frame; over
+ *   SockJS they are sent as base64 text.
+ * Rewritten frames carry "encoding" and/or "compression" headers, so
+ * clients decode each frame by its own headers. Binary ones are sent as
+ * application/octet-stream, which Spring writes as binary frames.
+ * Compressed frames also carry the message type in a "type" header, since
+ * OutboundQueueSession can no longer read it from the body.
+ *
+ * The broker hands every subscriber of a broadcast the same payload array,
+ * replays reuse the recorded one, and lobby frames come from the lobby's
+ * FrameCache, so the rewritten bodies are cached by payload identity: a
+ * frame is transcoded and compressed once per lobby version, not once per
+ * subscriber. The cache is a ConcurrentHashMap with weak identity keys, so
+ * sends to different sessions don't contend on it.
+ */
+@Component
+public class FrameEncoding implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public static final String ENCODING_HEADER = "encoding";
+    public static final String COMPRESSION_HEADER = "compression";
+    public static final String TYPE_HEADER = "type";
+    public static final String CBOR = "cbor";
+    public static final String DEFLATE = "deflate";
+
+    // Session attribute set when the connection can carry binary frames
+    private static final String BINARY_FRAMES_ATTR = "binaryFrames";
+    private static final MimeType BASE64_TEXT = MimeTypeUtils.TEXT_PLAIN;
+    private static final byte[] TYPE_PREFIX = "{\"type\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean cborEnabled;
+    private final boolean compressionEnabled;
+    private final int thresholdBytes;
+    private final int level;
+
+    private final Map<String, Wire> sessions = new ConcurrentHashMap<>();
+    // Weak keys: entries go away with the frames they were made from
+    private final Map<FrameKey, Variants> cache = new ConcurrentHashMap<>();
+    private final ReferenceQueue<byte[]> collectedFrames = new ReferenceQueue<>();
+
+    private final LongAdder transcoded = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder rewritten = new LongAdder();
+    private final LongAdder jsonBytes = new LongAdder();
+    private final LongAdder cborBytes = new LongAdder();
+    private final LongAdder compressInBytes = new LongAdder();
+    private final LongAdder compressOutBytes = new LongAdder();
+    private final LongAdder transcodeNanos = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+
+    public FrameEncoding(
+            @Value("${mafia.encoding.cbor-enabled:true}") boolean cborEnabled,
+            @Value("${mafia.compression.enabled:true}") boolean compressionEnabled,
+            @Value("${mafia.compression.threshold-bytes:1024}") int thresholdBytes,
+            @Value("${mafia.compression.level:6}") int level) {
+        this.cborEnabled = cborEnabled;
+        this.compressionEnabled = compressionEnabled;
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    /**
+     * Record the wire format a client asked for in CONNECT. Called once the
+     * session's player token has been validated.
+     */
+    public void negotiate(String wsSessionId, String encoding, String compression, Map<String, Object> sessionAttributes) {
+        boolean binary = sessionAttributes != null && Boolean.TRUE.equals(sessionAttributes.get(BINARY_FRAMES_ATTR));
+        boolean cbor = cborEnabled && CBOR.equalsIgnoreCase(trim(encoding));
+        if (cbor && !binary) {
+            System.out.println("Session " + wsSessionId + " asked for CBOR over SockJS; using JSON");
+            cbor = false;
+        }
+        boolean deflate = compressionEnabled && DEFLATE.equalsIgnoreCase(trim(compression));
+        if (cbor || deflate) {
+            sessions.put(wsSessionId, new Wire(cbor, deflate, binary));
+        }
+    }
+
+    private static String trim(String header) {
+        return header == null ? null : header.trim();
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                boolean binary = !(WebSocketSessionDecorator.unwrap(session) instanceof SockJsSession);
+                session.getAttributes().put(BINARY_FRAMES_ATTR, binary);
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Outbound channel: rewrite JSON payloads for sessions that negotiated CBOR or compression.
+     */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (sessions.isEmpty()) {
+            return message;
+        }
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] json)
+                || !isJson(headers.get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+        Wire wire = sessions.get(SimpMessageHeaderAccessor.getSessionId(headers));
+        if (wire == null) {
+            return message;
+        }
+
+        Variants variants = variants(json);
+        byte[] body = wire.cbor() ? variants.cbor(json) : json;
+        byte[] deflated = wire.deflate() && body.length >= thresholdBytes
+            ? (wire.cbor() ? variants.cborDeflated(json) : variants.jsonDeflated(json))
+            : null;
+        if (!wire.cbor() && deflated == null) {
+            return message;
+        }
+        if (deflated != null) {
+            body = wire.binary() ? deflated : variants.jsonDeflatedBase64(json);
+        }
+
+        rewritten.increment();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(wire.binary() ? MimeTypeUtils.APPLICATION_OCTET_STREAM : BASE64_TEXT);
+        if (wire.cbor()) {
+            accessor.setNativeHeader(ENCODING_HEADER, CBOR);
+        }
+        if (deflated != null) {
+            accessor.setNativeHeader(COMPRESSION_HEADER, DEFLATE);
+            String type = typeOf(json);
+            if (type != null) {
+                accessor.setNativeHeader(TYPE_HEADER, type);
+            }
+        }
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    private Variants variants(byte[] json) {
+        Reference<? extends byte[]> collected;
+        while ((collected = collectedFrames.poll()) != null) {
+            cache.remove(collected);
+        }
+        Variants variants = cache.get(new FrameKey(json, null));
+        return variants != null ? variants : cache.computeIfAbsent(new FrameKey(json, collectedFrames), key -> new Variants());
+    }
+
+    // Envelopes are encoded with the type first (see SnapshotTemplate)
+    static String typeOf(byte[] json) {
+        int start = TYPE_PREFIX.length;
+        if (json.length <= start || !Arrays.equals(json, 0, start, TYPE_PREFIX, 0, start)) {
+            return null;
+        }
+        for (int end = start; end < json.length && end < start + 64; end++) {
+            if (json[end] == '"') {
+                return new String(json, start, end - start, StandardCharsets.US_ASCII);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType mime) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mime);
+        }
+        return contentType instanceof String s && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(MimeTypeUtils.parseMimeType(s));
+    }
+
+    // zlib format, so browsers can inflate it with DecompressionStream("deflate").
+    // Null when it doesn't make the body smaller.
+    private byte[] deflate(byte[] body) {
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            byte[] out = new byte[body.length];
+            int length = 0;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished()) {
+                return null;
+            }
+            compressed.increment();
+            compressInBytes.add(body.length);
+            compressOutBytes.add(length);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+            compressNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private byte[] transcode(byte[] json) {
+        long start = System.nanoTime();
+        byte[] cbor = CborTranscoder.transcode(json);
+        transcodeNanos.add(System.nanoTime() - start);
+        transcoded.increment();
+        jsonBytes.add(json.length);
+        cborBytes.add(cbor.length);
+        return cbor;
+    }
+
+    /**
+     * Snapshot of the rewriting counters. Byte totals cover each body once,
+     * so their ratios are the size savings.
+     */
+    public Stats getStats() {
+        int cbor = 0;
+        int deflate = 0;
+        for (Wire wire : sessions.values()) {
+            cbor += wire.cbor() ? 1 : 0;
+            deflate += wire.deflate() ? 1 : 0;
+        }
+        return new Stats(cbor, deflate, rewritten.sum(), transcoded.sum(), compressed.sum(),
+            jsonBytes.sum(), cborBytes.sum(), compressInBytes.sum(), compressOutBytes.sum(),
+            transcodeNanos.sum(), compressNanos.sum());
+    }
+
+    private record Wire(boolean cbor, boolean deflate, boolean binary) {}
+
+    /**
+     * Weak cache key matching a payload array by identity. Once the array is
+     * collected the key only equals itself, so it can still be removed when
+     * it comes off the reference queue.
+     */
+    private static final class FrameKey extends WeakReference<byte[]> {
+        private final int hash;
+
+        FrameKey(byte[] frame, ReferenceQueue<byte[]> queue) {
+            super(frame, queue);
+            this.hash = System.identityHashCode(frame);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FrameKey other)) {
+                return false;
+            }
+            byte[] frame = get();
+            return frame != null && frame == other.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Rewritten bodies of one JSON frame, each made on first use.
+     * A null deflated body means compression didn't pay off. Must not
+     * reference the JSON itself, which is the weak cache key.
+     */
+    private final class Variants {
+        private byte[] cbor;
+        private byte[] cborDeflated;
+        private byte[] jsonDeflated;
+        private byte[] jsonDeflatedBase64;
+        private boolean cborDeflateTried;
+        private boolean jsonDeflateTried;
+
+        synchronized byte[] cbor(byte[] json) {
+            if (cbor == null) {
+                cbor = transcode(json);
+            }
+            return cbor;
+        }
+
+        synchronized byte[] cborDeflated(byte[] json) {
+            if (!cborDeflateTried) {
+                cborDeflateTried = true;
+                cborDeflated = deflate(cbor(json));
+            }
+            return cborDeflated;
+        }
+
+        synchronized byte[] jsonDeflated(byte[] json) {
+            if (!jsonDeflateTried) {
+                jsonDeflateTried = true;
+                jsonDeflated = deflate(json);
+            }
+            return jsonDeflated;
+        }
+
+        synchronized byte[] jsonDeflatedBase64(byte[] json) {
+            if (jsonDeflatedBase64 == null) {
+                jsonDeflatedBase64 = Base64.getEncoder().encode(jsonDeflated(json));
+            }
+            return jsonDeflatedBase64;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int cborSessions;
+        private final int deflateSessions;
+        private final long rewrittenFrames;     // Frames sent transcoded and/or compressed
+        private final long transcodedFrames;    // Bodies actually transcoded or compressed;
+        private final long compressedFrames;    // the rest of rewrittenFrames came from the cache
+        private final long jsonBytes;           // In/out of transcoding
+        private final long cborBytes;
+        private final long compressInBytes;     // In/out of compression
+        private final long compressOutBytes;
+        private final long transcodeNanos;
+        private final long compressNanos;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mafia.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.service.GameMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sends pre-encoded WebSocketMessage frames.
+ * Frames are encoded once with the application ObjectMapper (same output as
+ * convertAndSend) and the resulting bytes are handed to the broker as-is.
+ * 
+ * Lobby events are recorded in the lobby's EventRing and carry their sequence
+ * number in a "seq" STOMP header, so the cached frame bytes stay shared.
+ * Must be called on the lobby's lane.
+ * 
+ * Every frame is counted in GameMetrics by its message type.
+ */
+@Component
+public class MessageDispatcher {
+
+    public static final String SEQ_HEADER = "seq";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private GameMetrics metrics;
+
+    /**
+     * Encode a message envelope to JSON bytes.
+     */
+    public byte[] encode(Object message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode message", e);
+        }
+    }
+
+    /**
+     * Broadcast an encoded frame to /topic/lobby/{lobbyId} as the lobby's next event.
+     */
+    public void broadcast(Lobby lobby, byte[] frame) {
+        long seq = lobby.getEventRing().append(null, frame);
+        metrics.lobbyMessage(FrameEncoding.typeOf(frame), lobby.getConnectedPlayerCount());
+        send("/topic/lobby/" + lobby.getId(), frame, seq);
+    }
+
+    /**
+     * Send an encoded frame to one player as the lobby's next event.
+     * Use for private frames a reconnecting player must not miss.
+     */
+    public void sendEvent(Lobby lobby, UUID playerId, byte[] frame) {
+        long seq = lobby.getEventRing().append(playerId, frame);
+        metrics.playerMessage(FrameEncoding.typeOf(frame));
+        send("/queue/player/" + playerId, frame, seq);
+    }
+
+    /**
+     * Send one encoded frame per player, each as the lobby's next event.
+     * The frames are recorded in the EventRing in one append, then each
+     * connected player's MESSAGE goes to the broker channel; the broker still
+     * takes them one at a time. Players without a session are only recorded
+     * (they get the frame by replay when they resume).
+     * The frames must all be of one message type.
+     */
+    public void sendEvents(Lobby lobby, List<PlayerFrame> frames) {
+        if (frames.isEmpty()) {
+            return;
+        }
+        UUID[] recipients = new UUID[frames.size()];
+        byte[][] bodies = new byte[frames.size()][];
+        for (int i = 0; i < bodies.length; i++) {
+            recipients[i] = frames.get(i).playerId();
+            bodies[i] = frames.get(i).frame();
+        }
+        long seq = lobby.getEventRing().appendAll(recipients, bodies);
+
+        MessageChannel brokerChannel = messagingTemplate.getMessageChannel();
+        int sent = 0;
+        for (int i = 0; i < bodies.length; i++, seq++) {
+            Player player = lobby.getPlayerById(recipients[i]);
+            if (player != null && player.getSession().isConnected()) {
+                brokerChannel.send(message("/queue/player/" + recipients[i], bodies[i], seq));
+                sent++;
+            }
+        }
+        metrics.playerMessages(FrameEncoding.typeOf(bodies[0]), sent);
+    }
+
+    /**
+     * Send a state snapshot to one player, tagged with the lobby's latest sequence
+     * so the client knows which events it already reflects.
+     */
+    public void sendSnapshot(Lobby lobby, UUID playerId, byte[] frame) {
+        metrics.playerMessage(FrameEncoding.typeOf(frame));
+        send("/queue/player/" + playerId, frame, lobby.getEventRing().getLastSeq());
+    }
+
+    /**
+     * Replay a recorded frame to one player, with its original sequence number.
+     */
+    public void replay(UUID playerId, long seq, byte[] frame) {
+        metrics.playerMessage(FrameEncoding.typeOf(frame));
+        send("/queue/player/" + playerId, frame, seq);
+    }
+
+    /**
+     * Send an encoded frame to /queue/player/{playerId} outside the event sequence.
+     */
+    public void sendToPlayer(UUID playerId, byte[] frame) {
+        metrics.playerMessage(FrameEncoding.typeOf(frame));
+        send("/queue/player/" + playerId, frame, null);
+    }
+
+    private void send(String destination, byte[] frame, Long seq) {
+        messagingTemplate.getMessageChannel().send(message(destination, frame, seq));
+    }
+
+    // The complete MESSAGE that SimpMessagingTemplate.send(destination, message) would pass on
+    private static Message<byte[]> message(String destination, byte[] frame, Long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (seq != null) {
+            accessor.setNativeHeader(SEQ_HEADER, Long.toString(seq));
+        }
+        return MessageBuilder.createMessage(frame, accessor.getMessageHeaders());
+    }
+
+    /**
+     * A frame for one player, for sendEvents.
+     */
+    public record PlayerFrame(UUID playerId, byte[] frame) {
+    }
+}
@@ -0,0 +1,221 @@
+package com.mafia.messaging;
+
+import com.mafia.service.LobbyService;
+import com.mafia.store.InMemoryStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-session outbound queues with a slow-consumer policy.
+ *
+ * Installed as a WebSocket handler decorator: every session is wrapped in an
+ * OutboundQueueSession, and each queue is written by a sender thread while it
+ * has frames. Senders are platform threads: a write blocked on a slow client
+ * would pin a virtual thread's carrier (Tomcat writes under a monitor on
+ * Java 21) and stall every other session's sends. Thresholds:
+ * - degrade: queued bytes at which a session starts skipping player list
+ *   deltas (it gets a full list once it has caught up)
+ * - disconnect: queued bytes, or age of the oldest queued frame, at which
+ *   the session is closed. Age is also swept periodically, since a session
+ *   that stopped reading may not be sent anything else.
+ *
+ * Spring's send-buffer-size-limit still applies underneath, but sends now
+ * return as soon as a frame is queued, so it is no longer what trips first.
+ */
+@Component
+public class OutboundQueue implements WebSocketHandlerDecoratorFactory {
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Lazy
+    @Autowired
+    private LobbyService lobbyService;
+
+    private final boolean enabled;
+    private final long degradeBytes;
+    private final long disconnectBytes;
+    private final long maxDelayMillis;
+
+    private final AtomicInteger senderCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ws-send-" + senderCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "outbound-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Map<String, OutboundQueueSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger degradedNow = new AtomicInteger();
+    private final LongAdder degradedTotal = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder deltasDropped = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    public OutboundQueue(
+            @Value("${mafia.outbound.enabled:true}") boolean enabled,
+            @Value("${mafia.outbound.degrade-kb:64}") long degradeKb,
+            @Value("${mafia.outbound.disconnect-kb:1024}") long disconnectKb,
+            @Value("${mafia.outbound.max-delay-ms:30000}") long maxDelayMillis) {
+        this.enabled = enabled;
+        this.degradeBytes = degradeKb * 1024;
+        this.disconnectBytes = disconnectKb * 1024;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            long interval = Math.max(100, maxDelayMillis / 4);
+            sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // Close sessions whose oldest frame has waited past max-delay
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - maxDelayMillis;
+        for (OutboundQueueSession session : sessions.values()) {
+            long oldest = session.getOldestEnqueuedAt();
+            if (oldest >= 0 && oldest <= cutoff) {
+                session.disconnect();
+            }
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                OutboundQueueSession queued = new OutboundQueueSession(session, OutboundQueue.this);
+                sessions.put(session.getId(), queued);
+                super.afterConnectionEstablished(queued);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                OutboundQueueSession queued = sessions.remove(session.getId());
+                if (queued != null) {
+                    queued.discard();
+                }
+                super.afterConnectionClosed(queued != null ? queued : session, closeStatus);
+            }
+        };
+    }
+
+    long getDegradeBytes() {
+        return degradeBytes;
+    }
+
+    long getDisconnectBytes() {
+        return disconnectBytes;
+    }
+
+    long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    void startSender(Runnable drain) {
+        senders.execute(drain);
+    }
+
+    /**
+     * Send a full player list to a session that skipped deltas while degraded.
+     */
+    void resync(String wsSessionId) {
+        String lobbyId = store.getLobbyIdByWebSocketSession(wsSessionId);
+        if (lobbyId != null) {
+            resyncs.increment();
+            lobbyService.sendPlayerListToPlayer(lobbyId, wsSessionId);
+        }
+    }
+
+    void degraded() {
+        degradedNow.incrementAndGet();
+        degradedTotal.increment();
+    }
+
+    void recovered() {
+        degradedNow.decrementAndGet();
+    }
+
+    void disconnected() {
+        disconnected.increment();
+    }
+
+    void superseded() {
+        superseded.increment();
+    }
+
+    void deltaDropped() {
+        deltasDropped.increment();
+    }
+
+    /**
+     * Snapshot of queue depths and slow-consumer counters.
+     */
+    public Stats getStats() {
+        long frames = 0;
+        long bytes = 0;
+        long maxBytes = 0;
+        for (OutboundQueueSession session : sessions.values()) {
+            long queued = session.getQueuedBytes();
+            frames += session.getQueuedFrames();
+            bytes += queued;
+            maxBytes = Math.max(maxBytes, queued);
+        }
+        return new Stats(sessions.size(), frames, bytes, maxBytes, degradedNow.get(), degradedTotal.sum(),
+            disconnected.sum(), superseded.sum(), deltasDropped.sum(), resyncs.sum());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int sessions;
+        private final long queuedFrames;
+        private final long queuedBytes;
+        private final long maxSessionQueuedBytes;
+        private final int degradedSessions;       // Currently degraded
+        private final long degradedTotal;         // Times a session became degraded
+        private final long disconnectedTotal;     // Sessions closed for being too slow or failing a write
+        private final long supersededFrames;
+        private final long droppedDeltas;
+        private final long resyncs;
+    }
+}
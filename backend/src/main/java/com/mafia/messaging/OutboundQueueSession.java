@@ -0,0 +1,258 @@
+package com.mafia.messaging;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A WebSocket session whose sends are queued and written by a sender thread,
+ * so a slow client never blocks the threads broadcasting to it.
+ *
+ * While frames wait, a newer PLAYER_LIST_UPDATE or PHASE_CHANGE for the same
+ * destination replaces the queued one. Past the degrade threshold the session
+ * also skips PLAYER_LIST_DELTA frames and gets a full player list once it has
+ * caught up. Other frames (ROLE_ASSIGNED, GAME_SNAPSHOT, control frames) are
+ * never dropped. Past the disconnect thresholds the session is closed and
+ * the client resumes with lastSeq on reconnect.
+ */
+public class OutboundQueueSession extends WebSocketSessionDecorator {
+
+    // STOMP headers plus the start of the body; enough to classify a frame
+    private static final int PEEK_CHARS = 512;
+    private static final String TYPE_PREFIX = "{\"type\":\"";
+
+    private final OutboundQueue policy;
+
+    // Guarded by this
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private final Map<String, Frame> latestByKey = new HashMap<>();
+    private long queuedBytes;
+    private boolean draining;
+    private boolean degraded;
+    private boolean deltasDropped;
+    private boolean closed;
+
+    OutboundQueueSession(WebSocketSession delegate, OutboundQueue policy) {
+        super(delegate);
+        this.policy = policy;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        Frame frame = Frame.of(message);
+        boolean startDrain;
+        boolean overLimit;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (degraded && frame.kind == Kind.DELTA) {
+                deltasDropped = true;
+                policy.deltaDropped();
+                return;
+            }
+            if (frame.key != null) {
+                Frame older = latestByKey.put(frame.key, frame);
+                if (older != null) {
+                    // Keep the slot for ordering but let the payload go
+                    older.message = null;
+                    queuedBytes -= older.bytes;
+                    policy.superseded();
+                }
+            }
+            queue.add(frame);
+            queuedBytes += frame.bytes;
+            if (!degraded && queuedBytes >= policy.getDegradeBytes()) {
+                degraded = true;
+                policy.degraded();
+            }
+            overLimit = queuedBytes >= policy.getDisconnectBytes()
+                || frame.enqueuedAt - queue.peekFirst().enqueuedAt >= policy.getMaxDelayMillis();
+            startDrain = !overLimit && !draining;
+            if (startDrain) {
+                draining = true;
+            }
+        }
+        if (overLimit) {
+            disconnect();
+        } else if (startDrain) {
+            policy.startSender(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            WebSocketMessage<?> message;
+            boolean resync = false;
+            synchronized (this) {
+                frame = queue.poll();
+                while (frame != null && frame.message == null) {
+                    frame = queue.poll();
+                }
+                if (frame == null || closed) {
+                    draining = false;
+                    return;
+                }
+                if (frame.key != null && latestByKey.get(frame.key) == frame) {
+                    latestByKey.remove(frame.key);
+                }
+                message = frame.message;
+                queuedBytes -= frame.bytes;
+                // Recover with some headroom so a session doesn't flap around the threshold
+                if (degraded && queuedBytes < policy.getDegradeBytes() / 2) {
+                    degraded = false;
+                    resync = deltasDropped;
+                    deltasDropped = false;
+                    policy.recovered();
+                }
+            }
+            try {
+                getDelegate().sendMessage(message);
+            } catch (IOException | RuntimeException e) {
+                // Usually the container's write timeout on a client that stopped reading
+                System.err.println("Outbound send failed for session " + getId() + ": " + e.getMessage());
+                disconnect();
+                return;
+            }
+            if (resync) {
+                policy.resync(getId());
+            }
+        }
+    }
+
+    /**
+     * Close the session as too slow. The close runs on a sender thread since it
+     * can wait behind a write that is still blocked on the client.
+     */
+    void disconnect() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            discard();
+        }
+        policy.disconnected();
+        System.err.println("Closing slow WebSocket session " + getId());
+        policy.startSender(() -> {
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                // Already gone
+            }
+        });
+    }
+
+    /**
+     * Drop everything queued; the session is closed or closing.
+     */
+    synchronized void discard() {
+        if (degraded) {
+            degraded = false;
+            policy.recovered();
+        }
+        closed = true;
+        queue.clear();
+        latestByKey.clear();
+        queuedBytes = 0;
+    }
+
+    /**
+     * When the oldest queued frame was sent, or -1 if nothing is queued.
+     */
+    synchronized long getOldestEnqueuedAt() {
+        Frame oldest = queue.peekFirst();
+        return oldest == null ? -1 : oldest.enqueuedAt;
+    }
+
+    synchronized int getQueuedFrames() {
+        return queue.size();
+    }
+
+    synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    private enum Kind { SUPERSEDABLE, DELTA, ESSENTIAL }
+
+    private static final class Frame {
+        WebSocketMessage<?> message;  // Null once superseded
+        final int bytes;
+        final Kind kind;
+        final String key;  // destination|type for supersedable frames
+        final long enqueuedAt = System.currentTimeMillis();
+
+        private Frame(WebSocketMessage<?> message, Kind kind, String key) {
+            this.message = message;
+            this.bytes = message.getPayloadLength();
+            this.kind = kind;
+            this.key = key;
+        }
+
+        static Frame of(WebSocketMessage<?> message) {
+            String head = peek(message);
+            // MESSAGE frames only; everything else (CONNECTED, ERROR, heartbeats) is essential
+            int headerEnd = head == null || !head.startsWith("MESSAGE\n") ? -1 : head.indexOf("\n\n");
+            String type = headerEnd < 0 ? null : typeOf(head, headerEnd);
+            if (type == null) {
+                return new Frame(message, Kind.ESSENTIAL, null);
+            }
+            return switch (type) {
+                case "PLAYER_LIST_UPDATE", "PHASE_CHANGE" ->
+                    new Frame(message, Kind.SUPERSEDABLE, header(head, headerEnd, "destination") + "|" + type);
+                case "PLAYER_LIST_DELTA" -> new Frame(message, Kind.DELTA, null);
+                default -> new Frame(message, Kind.ESSENTIAL, null);
+            };
+        }
+
+        // JSON bodies start with the type field and CBOR ones with its key index;
+        // compressed ones have it in a header (see FrameEncoding)
+        private static String typeOf(String head, int headerEnd) {
+            String header = header(head, headerEnd, FrameEncoding.TYPE_HEADER);
+            if (!header.isEmpty()) {
+                return header;
+            }
+            int bodyStart = headerEnd + 2;
+            if (!head.startsWith(TYPE_PREFIX, bodyStart)) {
+                return CborTranscoder.peekType(head, bodyStart);
+            }
+            int typeStart = bodyStart + TYPE_PREFIX.length();
+            int typeEnd = head.indexOf('"', typeStart);
+            return typeEnd < 0 ? null : head.substring(typeStart, typeEnd);
+        }
+
+        private static String peek(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage text) {
+                String payload = text.getPayload();
+                return payload.length() <= PEEK_CHARS ? payload : payload.substring(0, PEEK_CHARS);
+            }
+            if (message instanceof BinaryMessage binary) {
+                ByteBuffer payload = binary.getPayload().duplicate();
+                byte[] head = new byte[Math.min(payload.remaining(), PEEK_CHARS)];
+                payload.get(head);
+                return new String(head, StandardCharsets.ISO_8859_1);  // Headers are ASCII
+            }
+            return null;
+        }
+
+        private static String header(String head, int headerEnd, String name) {
+            int start = head.indexOf("\n" + name + ":");
+            if (start < 0 || start > headerEnd) {
+                return "";
+            }
+            start += name.length() + 2;
+            int end = head.indexOf('\n', start);
+            return head.substring(start, end);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.mafia.messaging;
+
+import com.mafia.model.enums.Role;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Renders ROLE_ASSIGNED frames from pre-encoded parts.
+ *
+ * Everything after the player id is fixed per role, so a recipient only
+ * costs a byte copy plus their id. The output is the same JSON that Jackson
+ * produces for WebSocketMessage<RoleAssignedData>.
+ */
+public final class RoleAssignedTemplate {
+    private static final String MESSAGE_PREFIX = "You have been assigned the role: ";
+
+    private static final byte[] PREFIX = ascii("{\"type\":\"ROLE_ASSIGNED\",\"data\":{\"playerId\":\"");
+    private static final byte[][] SUFFIXES = new byte[Role.values().length][];
+    private static final int UUID_LENGTH = 36;
+
+    static {
+        for (Role role : Role.values()) {
+            SUFFIXES[role.ordinal()] = ascii("\",\"role\":\"" + role.name()
+                + "\",\"message\":\"" + MESSAGE_PREFIX + role.name() + "\"}}");
+        }
+    }
+
+    private RoleAssignedTemplate() {
+    }
+
+    /**
+     * Render one recipient's frame.
+     */
+    public static byte[] render(UUID playerId, Role role) {
+        byte[] suffix = SUFFIXES[role.ordinal()];
+        byte[] frame = new byte[PREFIX.length + UUID_LENGTH + suffix.length];
+        System.arraycopy(PREFIX, 0, frame, 0, PREFIX.length);
+        byte[] id = ascii(playerId.toString());
+        System.arraycopy(id, 0, frame, PREFIX.length, UUID_LENGTH);
+        System.arraycopy(suffix, 0, frame, PREFIX.length + UUID_LENGTH, suffix.length);
+        return frame;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
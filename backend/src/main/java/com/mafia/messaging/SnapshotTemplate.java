@@ -0,0 +1,59 @@
+package com.mafia.messaging;
+
+import com.mafia.model.enums.Role;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Renders GAME_SNAPSHOT frames from a shared, pre-encoded lobby part.
+ *
+ * The lobby-wide fields are encoded once per lobby version; each recipient
+ * only costs a byte copy plus their yourRole/alive fields. The output is the
+ * same JSON that Jackson produces for WebSocketMessage<GameSnapshotData>.
+ */
+public final class SnapshotTemplate {
+    private static final byte[] PREFIX = ascii("{\"type\":\"GAME_SNAPSHOT\",\"data\":{\"yourRole\":");
+    private static final byte[] NULL_ROLE = ascii("null");
+    private static final byte[][] ROLES = new byte[Role.values().length][];
+    private static final byte[] ALIVE = ascii(",\"alive\":true,");
+    private static final byte[] DEAD = ascii(",\"alive\":false,");
+    private static final byte[] SUFFIX = ascii("}}");
+
+    static {
+        for (Role role : Role.values()) {
+            ROLES[role.ordinal()] = ascii("\"" + role.name() + "\"");
+        }
+    }
+
+    private SnapshotTemplate() {
+    }
+
+    /**
+     * Render one recipient's frame.
+     *
+     * @param sharedJson the encoded GameSnapshotData.Shared object
+     */
+    public static byte[] render(byte[] sharedJson, Role yourRole, boolean alive) {
+        byte[] role = yourRole == null ? NULL_ROLE : ROLES[yourRole.ordinal()];
+        byte[] aliveField = alive ? ALIVE : DEAD;
+        // Drop the shared object's own braces; its fields continue the data object
+        int sharedLength = sharedJson.length - 2;
+
+        byte[] frame = new byte[PREFIX.length + role.length + aliveField.length + sharedLength + SUFFIX.length];
+        int pos = 0;
+        System.arraycopy(PREFIX, 0, frame, pos, PREFIX.length);
+        pos += PREFIX.length;
+        System.arraycopy(role, 0, frame, pos, role.length);
+        pos += role.length;
+        System.arraycopy(aliveField, 0, frame, pos, aliveField.length);
+        pos += aliveField.length;
+        System.arraycopy(sharedJson, 1, frame, pos, sharedLength);
+        pos += sharedLength;
+        System.arraycopy(SUFFIX, 0, frame, pos, SUFFIX.length);
+        return frame;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
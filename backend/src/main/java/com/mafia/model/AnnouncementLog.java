@@ -0,0 +1,101 @@
+package com.mafia.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded announcement history for a game.
+ * Embedded within GameState and only touched on the lobby's lane.
+ *
+ * Announcements get increasing indexes (0 = first of the game). Only the most
+ * recent `capacity` are kept; older ones are overwritten, so memory stays
+ * constant however long the game runs.
+ */
+public class AnnouncementLog {
+    public static final int DEFAULT_CAPACITY = 500;
+
+    private final int capacity;
+    private String[] entries;
+    private long total;  // Announcements ever added; also the next index
+    private int held;    // Announcements still held (at most capacity)
+
+    public AnnouncementLog(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.entries = new String[Math.min(this.capacity, 16)];
+    }
+
+    public void add(String message) {
+        int slot = (int) (total % capacity);
+        if (slot >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.min(capacity, Math.max(slot + 1, entries.length * 2)));
+        }
+        entries[slot] = message;
+        total++;
+        if (held < capacity) {
+            held++;
+        }
+    }
+
+    /**
+     * Refill an empty log from a checkpoint: latest are the held announcements,
+     * oldest first, and total is how many were ever added.
+     */
+    public void restore(long total, List<String> latest) {
+        this.total = total - latest.size();
+        this.held = 0;
+        for (String message : latest) {
+            add(message);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    /**
+     * The most recent announcement, or null if there is none.
+     */
+    public String latest() {
+        return total == 0 ? null : entries[(int) ((total - 1) % capacity)];
+    }
+
+    /**
+     * Total number of announcements ever added (index of the next one).
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Index of the oldest announcement still held.
+     */
+    public long getFirstIndex() {
+        return total - held;
+    }
+
+    /**
+     * The last n announcements, oldest first.
+     */
+    public List<String> tail(int n) {
+        return range(Math.max(getFirstIndex(), total - Math.max(0, n)), total);
+    }
+
+    /**
+     * Held announcements with from <= index < to, oldest first.
+     * The range is clipped to what is still held.
+     */
+    public List<String> range(long from, long to) {
+        long start = Math.max(from, getFirstIndex());
+        long end = Math.min(to, total);
+        List<String> result = new ArrayList<>((int) Math.max(0, end - start));
+        for (long i = start; i < end; i++) {
+            result.add(entries[(int) (i % capacity)]);
+        }
+        return result;
+    }
+}
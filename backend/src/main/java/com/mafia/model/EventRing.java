@@ -0,0 +1,124 @@
+package com.mafia.model;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Bounded history of the encoded frames sent for a lobby, by sequence number.
+ * Embedded within Lobby and only touched on the lobby's lane.
+ *
+ * Every lobby broadcast (and recorded private frame such as ROLE_ASSIGNED) gets
+ * the next sequence number. A reconnecting client reports the last sequence it
+ * saw and is replayed just the frames after it, as long as they are still held.
+ *
+ * A new ring (new lobby, or one restored from a checkpoint, the journal or
+ * the spill tier) starts at wall-clock milliseconds x 1000 rather than 0, so
+ * sequences a client saw from an earlier ring for the same lobby are always
+ * behind it and get a snapshot instead of a wrong replay. The values stay
+ * well inside JavaScript's safe integer range. Slots are indexed from that
+ * start, so a ring only grows as far as the frames it has held.
+ */
+public class EventRing {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private byte[][] frames;          // Grown on demand up to capacity
+    private UUID[] recipients;        // null = broadcast
+    private final long baseSeq;       // Sequence before the first frame; slot 0 holds baseSeq + 1
+    private long lastSeq;             // Sequence of the newest frame
+    private int size;
+
+    public EventRing(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.frames = new byte[0][];
+        this.recipients = new UUID[0];
+        this.baseSeq = System.currentTimeMillis() * 1000;
+        this.lastSeq = baseSeq;
+    }
+
+    /**
+     * Record a frame and return its sequence number.
+     *
+     * @param recipient the player a private frame was sent to, or null for a broadcast
+     */
+    public long append(UUID recipient, byte[] frame) {
+        grow(1);
+        lastSeq++;
+        int slot = slot(lastSeq);
+        frames[slot] = frame;
+        recipients[slot] = recipient;
+        if (size < capacity) {
+            size++;
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Record a run of frames under consecutive sequence numbers, growing the
+     * ring at most once, and return the sequence number of the first one.
+     *
+     * @param recipients the player each frame was sent to, or null for a broadcast
+     */
+    public long appendAll(UUID[] recipients, byte[][] frames) {
+        grow(frames.length);
+        long first = lastSeq + 1;
+        for (int i = 0; i < frames.length; i++) {
+            int slot = slot(++lastSeq);
+            this.frames[slot] = frames[i];
+            this.recipients[slot] = recipients[i];
+        }
+        size = (int) Math.min(capacity, (long) size + frames.length);
+        return first;
+    }
+
+    // Make room for the next count slots (until the ring is full size and wraps)
+    private void grow(int count) {
+        int needed = (int) Math.min(capacity, lastSeq - baseSeq + count);
+        if (needed > frames.length) {
+            int length = Math.min(capacity, Math.max(needed, frames.length * 2));
+            frames = Arrays.copyOf(frames, length);
+            recipients = Arrays.copyOf(recipients, length);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Check whether every frame after afterSeq is still held.
+     */
+    public boolean canReplay(long afterSeq) {
+        return afterSeq >= lastSeq - size && afterSeq <= lastSeq;
+    }
+
+    /**
+     * Feed the frames after afterSeq that a player should see to the consumer, in order.
+     * Returns false (and feeds nothing) if some of them have already been overwritten.
+     */
+    public boolean replay(long afterSeq, UUID playerId, FrameConsumer consumer) {
+        if (!canReplay(afterSeq)) {
+            return false;
+        }
+        for (long seq = afterSeq + 1; seq <= lastSeq; seq++) {
+            int slot = slot(seq);
+            if (recipients[slot] == null || recipients[slot].equals(playerId)) {
+                consumer.accept(seq, frames[slot]);
+            }
+        }
+        return true;
+    }
+
+    private int slot(long seq) {
+        return (int) ((seq - baseSeq - 1) % capacity);
+    }
+
+    @FunctionalInterface
+    public interface FrameConsumer {
+        void accept(long seq, byte[] frame);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mafia.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Encoded views of a lobby (broadcast frames, REST bodies), cached by lobby version.
+ * Embedded within Lobby and only touched on the lobby's lane.
+ */
+public class FrameCache {
+    private final Map<String, Entry> entries = new HashMap<>(4);
+
+    private record Entry(long version, byte[] bytes) {}
+
+    /**
+     * Get the bytes for key at the given version, encoding them only if
+     * the cached entry is missing or older.
+     */
+    public byte[] get(String key, long version, Supplier<byte[]> encoder) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version() != version) {
+            entry = new Entry(version, encoder.get());
+            entries.put(key, entry);
+        }
+        return entry.bytes();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
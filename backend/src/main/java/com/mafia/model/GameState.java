@@ -1,10 +1,9 @@
 package com.mafia.model;
 
 import com.mafia.model.enums.GamePhase;
+import lombok.AccessLevel;
 import lombok.Data;
-
-import java.util.ArrayList;
-import java.util.List;
+import lombok.Setter;
 
 /**
  * Represents the current state of an active game.
@@ -14,12 +13,17 @@ import java.util.List;
 public class GameState {
     private GamePhase phase;
     private int dayCount;
-    private List<String> announcements;  // God announcements visible to all
+    @Setter(AccessLevel.NONE)
+    private AnnouncementLog announcements;  // God announcements visible to all (bounded)
     
     public GameState() {
+        this(AnnouncementLog.DEFAULT_CAPACITY);
+    }
+    
+    public GameState(int announcementHistory) {
         this.phase = GamePhase.WAITING;
         this.dayCount = 0;
-        this.announcements = new ArrayList<>();
+        this.announcements = new AnnouncementLog(announcementHistory);
     }
     
     public void nextPhase() {
@@ -1,58 +1,204 @@
 package com.mafia.model;
 
 import com.mafia.model.enums.Role;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
-import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Represents a game lobby.
  * Contains embedded GameState for the current game.
  * Permissions are role-based (GOD role has admin privileges).
+ * 
+ * Players are indexed by id, token and WebSocket session for O(1) lookups.
+ * Use addPlayer/assignRole/attachSession/detachSession so the indexes stay in sync.
+ * 
+ * The version increases on every saved change; encoded views of the lobby
+ * are cached per version in the embedded FrameCache.
+ * 
+ * Broadcast frames are kept by sequence number in the embedded EventRing,
+ * so reconnecting clients can be replayed what they missed.
+ * 
+ * An idle lobby can be compacted into a PlayerTable, which drops the Player
+ * objects and indexes. Any player access inflates it back transparently.
  */
 @Data
 public class Lobby {
-    private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final SecureRandom RANDOM = new SecureRandom();
-    
     private String id;
+    @Setter(AccessLevel.NONE)
     private List<Player> players;
     private int maxPlayers;
     private GameState gameState;  // Embedded game state
+    @Setter(AccessLevel.NONE)
+    private long version;         // Bumped on every saved change
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private volatile long lastActivity;  // Millis of the last saved change, for tiering and the reaper (read off the lane)
+    
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private final FrameCache frameCache = new FrameCache();
+    
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private final EventRing eventRing;
+    
+    // Written off the lane by players during the night; not encoded (actions are resubmitted after a restart)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private NightActions nightActions;
+    
+    // Player list delta tracking: sequence of the last delta and players changed since
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private long playerListSequence;
+    
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private final Set<UUID> changedPlayers = new LinkedHashSet<>();
+    
+    // Secondary indexes (not part of the lobby's value)
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private Map<UUID, Player> playersById = new HashMap<>();
+    
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private Map<String, Player> playersByToken = new HashMap<>();
+    
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private Map<String, Player> playersBySession = new HashMap<>();
+    
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private Player god;
+    
+    // Compact form while idle; players and indexes are null while this is set
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    private PlayerTable compactPlayers;
     
     public Lobby(String id) {
+        this(id, EventRing.DEFAULT_CAPACITY, AnnouncementLog.DEFAULT_CAPACITY);
+    }
+    
+    public Lobby(String id, int replayCapacity, int announcementHistory) {
         this.id = id;
+        this.eventRing = new EventRing(replayCapacity);
         this.players = new ArrayList<>();
         this.maxPlayers = 20;  // Default max
-        this.gameState = new GameState();  // Initialize game state
+        this.nightActions = new NightActions(maxPlayers);
+        this.gameState = new GameState(announcementHistory);  // Initialize game state
+        this.lastActivity = System.currentTimeMillis();
+    }
+    
+    /**
+     * Set the player limit. Call before the lobby is shared (creation or restore):
+     * the night action buffer is resized to one seat per player.
+     */
+    public void setMaxPlayers(int maxPlayers) {
+        this.maxPlayers = maxPlayers;
+        if (nightActions.getSeats() != maxPlayers) {
+            this.nightActions = new NightActions(maxPlayers);
+        }
+    }
+    
+    /**
+     * Mark the lobby as changed, invalidating cached frames.
+     */
+    public void incrementVersion() {
+        version++;
     }
     
     /**
-     * Generate a 6-character alphanumeric lobby ID.
+     * Record activity now, postponing tiering of the lobby.
      */
-    public static String generateId() {
-        StringBuilder sb = new StringBuilder(6);
-        for (int i = 0; i < 6; i++) {
-            sb.append(ALPHANUMERIC.charAt(RANDOM.nextInt(ALPHANUMERIC.length())));
+    public void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+    
+    public boolean hasConnectedPlayers() {
+        if (compactPlayers != null) {
+            for (int row = 0; row < compactPlayers.size(); row++) {
+                if (compactPlayers.isConnected(row)) {
+                    return true;
+                }
+            }
+            return false;
         }
-        return sb.toString().toUpperCase();
+        for (Player player : players) {
+            if (player.getSession().isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public List<Player> getPlayers() {
+        inflate();
+        return players;
+    }
+    
+    public int getPlayerCount() {
+        return compactPlayers != null ? compactPlayers.size() : players.size();
+    }
+    
+    // Players with a WebSocket session, i.e. recipients of a lobby broadcast
+    public int getConnectedPlayerCount() {
+        return compactPlayers != null ? 0 : playersBySession.size();
     }
     
     public void addPlayer(Player player) {
+        inflate();
         if (players.size() >= maxPlayers) {
             throw new IllegalStateException("Lobby is full");
         }
+        player.getSession().setSeat(players.size());
         players.add(player);
+        index(player);
+        changedPlayers.add(player.getId());
+    }
+    
+    private void index(Player player) {
+        playersById.put(player.getId(), player);
+        playersByToken.put(player.getSession().getPlayerToken(), player);
+        if (player.getSession().getWebSocketSessionId() != null) {
+            playersBySession.put(player.getSession().getWebSocketSessionId(), player);
+        }
+        if (player.getRole() == Role.GOD) {
+            god = player;
+        }
     }
     
     public Player getPlayerById(UUID playerId) {
-        return players.stream()
-                .filter(p -> p.getId().equals(playerId))
-                .findFirst()
-                .orElse(null);
+        inflate();
+        return playersById.get(playerId);
+    }
+    
+    public Player getPlayerByToken(String playerToken) {
+        inflate();
+        return playersByToken.get(playerToken);
+    }
+    
+    /**
+     * Get the player whose current WebSocket session is wsSessionId.
+     * Returns null for sessions that have been replaced by a newer one.
+     */
+    public Player getPlayerByWebSocketSession(String wsSessionId) {
+        inflate();
+        return playersBySession.get(wsSessionId);
     }
     
     /**
@@ -60,9 +206,131 @@ public class Lobby {
      * Returns null if no God assigned yet.
      */
     public Player getGod() {
-        return players.stream()
-                .filter(p -> p.getRole() == Role.GOD)
-                .findFirst()
-                .orElse(null);
+        inflate();
+        return god;
+    }
+    
+    /**
+     * Set a player's role, keeping the God index in sync.
+     */
+    public void assignRole(Player player, Role role) {
+        inflate();
+        boolean wasGod = player.getRole() == Role.GOD;
+        player.setRole(role);
+        if (role == Role.GOD) {
+            god = player;
+        } else if (god == player) {
+            god = null;
+        }
+        if (wasGod != (role == Role.GOD)) {
+            changedPlayers.add(player.getId());  // Only the isGod flag is public
+        }
+    }
+    
+    /**
+     * Bind a player to a new WebSocket session and mark them connected.
+     * Any previous session of the player stops resolving to them.
+     */
+    public void attachSession(Player player, String wsSessionId) {
+        inflate();
+        PlayerSession session = player.getSession();
+        if (session.getWebSocketSessionId() != null) {
+            playersBySession.remove(session.getWebSocketSessionId());
+        }
+        session.setConnected(true);
+        session.setWebSocketSessionId(wsSessionId);
+        playersBySession.put(wsSessionId, player);
+        changedPlayers.add(player.getId());
+    }
+    
+    /**
+     * Unbind a player from their WebSocket session and mark them disconnected.
+     */
+    public void detachSession(Player player) {
+        inflate();
+        PlayerSession session = player.getSession();
+        if (session.getWebSocketSessionId() != null) {
+            playersBySession.remove(session.getWebSocketSessionId());
+        }
+        session.setConnected(false);
+        session.setWebSocketSessionId(null);
+        changedPlayers.add(player.getId());
+    }
+    
+    /**
+     * Record a change to a player's public fields (name, alive) made directly on the Player.
+     */
+    public void markPlayerChanged(Player player) {
+        changedPlayers.add(player.getId());
+    }
+    
+    /**
+     * Take the players changed since the last delta and advance the sequence.
+     * Returns an empty list (and keeps the sequence) if nothing changed.
+     */
+    public List<Player> drainChangedPlayers() {
+        if (changedPlayers.isEmpty()) {
+            return List.of();
+        }
+        inflate();
+        List<Player> changed = new ArrayList<>(changedPlayers.size());
+        for (UUID playerId : changedPlayers) {
+            Player player = playersById.get(playerId);
+            if (player != null) {
+                changed.add(player);
+            }
+        }
+        changedPlayers.clear();
+        playerListSequence++;
+        incrementVersion();  // Cached full lists carry the sequence
+        return changed;
+    }
+    
+    public boolean isCompact() {
+        return compactPlayers != null;
+    }
+    
+    /**
+     * The compact player table, or null if the lobby is not compacted.
+     * Lets encoders read an idle lobby without inflating it.
+     */
+    public PlayerTable getCompactPlayers() {
+        return compactPlayers;
+    }
+    
+    /**
+     * Move players into a compact PlayerTable and drop the Player objects
+     * and indexes. Players obtained before compaction become detached copies.
+     */
+    public void compact() {
+        if (compactPlayers != null) {
+            return;
+        }
+        compactPlayers = PlayerTable.of(players);
+        players = null;
+        playersById = null;
+        playersByToken = null;
+        playersBySession = null;
+        god = null;
+    }
+    
+    /**
+     * Rebuild Player objects and indexes from the compact table, if compacted.
+     */
+    private void inflate() {
+        if (compactPlayers == null) {
+            return;
+        }
+        PlayerTable table = compactPlayers;
+        compactPlayers = null;
+        players = table.toPlayers();
+        playersById = new HashMap<>();
+        playersByToken = new HashMap<>();
+        playersBySession = new HashMap<>();
+        for (int seat = 0; seat < players.size(); seat++) {
+            Player player = players.get(seat);
+            player.getSession().setSeat(seat);
+            index(player);
+        }
     }
 }
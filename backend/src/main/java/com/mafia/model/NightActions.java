@@ -0,0 +1,77 @@
+package com.mafia.model;
+
+import com.mafia.model.enums.NightActionType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Night actions submitted by a lobby's players, one slot per seat (the
+ * player's position in the lobby). Embedded within Lobby.
+ *
+ * This is the one part of a Lobby written off its lane: a player's action is
+ * a single store into their own slot, so submitting never waits or retries,
+ * however many players act at once. A later submission replaces the earlier.
+ *
+ * The lane drains all slots in one pass (in seat order) when the night ends.
+ * Every phase change starts a new epoch, and actions are stamped with the
+ * epoch they were submitted in, so an action sent during the day, or too
+ * late for the night it was meant for, is never counted.
+ */
+public class NightActions {
+
+    /**
+     * One player's action, stamped with the epoch it was submitted in.
+     */
+    public record Action(int seat, UUID actorId, NightActionType type, UUID targetId, int epoch) {}
+
+    private final AtomicReferenceArray<Action> slots;
+    private volatile int epoch;
+
+    public NightActions(int seats) {
+        this.slots = new AtomicReferenceArray<>(seats);
+    }
+
+    /**
+     * Record a player's action for the current phase. Any thread.
+     *
+     * @return false if the seat is not in this lobby
+     */
+    public boolean submit(int seat, UUID actorId, NightActionType type, UUID targetId) {
+        if (seat < 0 || seat >= slots.length()) {
+            return false;
+        }
+        slots.set(seat, new Action(seat, actorId, type, targetId, epoch));
+        return true;
+    }
+
+    /**
+     * Take the actions submitted during the current phase, in seat order,
+     * and clear every slot. Call on the lobby's lane.
+     */
+    public List<Action> drain() {
+        int current = epoch;
+        List<Action> actions = new ArrayList<>();
+        for (int seat = 0; seat < slots.length(); seat++) {
+            Action action = slots.getAndSet(seat, null);
+            if (action != null && action.epoch() == current) {
+                actions.add(action);
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Start a new epoch; actions submitted before it are ignored from now on.
+     * Call on the lobby's lane whenever the phase changes.
+     */
+    public void advance() {
+        epoch++;
+    }
+
+    public int getSeats() {
+        return slots.length();
+    }
+}
@@ -11,6 +11,7 @@ public class PlayerSession {
     private String playerToken;           // Secret token for authentication
     private boolean connected;            // Current connection status
     private String webSocketSessionId;    // Current WebSocket session ID
+    private int seat = -1;                // Position in the lobby (night action slot), set when added
     
     public PlayerSession(String playerToken) {
         this.playerToken = playerToken;
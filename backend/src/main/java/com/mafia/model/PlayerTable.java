@@ -0,0 +1,153 @@
+package com.mafia.model;
+
+import com.mafia.model.enums.Role;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact column-oriented storage for a lobby's players.
+ *
+ * Used for idle lobbies: instead of one Player + PlayerSession + UUID + token
+ * String per seat plus index entries, each seat costs two longs for the id,
+ * two longs for the token, a name reference, a role byte and two bits
+ * (the name String is most of what is left).
+ *
+ * Tokens that are not UUIDs and live WebSocket session IDs are kept in
+ * String columns that are only allocated when needed.
+ */
+public class PlayerTable {
+    private static final byte NO_ROLE = -1;
+    private static final Role[] ROLES = Role.values();
+
+    private final int size;
+    private final long[] idHi;
+    private final long[] idLo;
+    private final String[] names;
+    private final byte[] roles;
+    private final BitSet alive;
+    private final BitSet connected;
+    private final long[] tokenHi;
+    private final long[] tokenLo;
+    private String[] rawTokens;       // Only for tokens that are not UUIDs
+    private String[] wsSessionIds;    // Only if some player still has a session
+
+    private PlayerTable(int size) {
+        this.size = size;
+        this.idHi = new long[size];
+        this.idLo = new long[size];
+        this.names = new String[size];
+        this.roles = new byte[size];
+        this.alive = new BitSet(size);
+        this.connected = new BitSet(size);
+        this.tokenHi = new long[size];
+        this.tokenLo = new long[size];
+    }
+
+    /**
+     * Build a table from Player objects, preserving order.
+     */
+    public static PlayerTable of(List<Player> players) {
+        PlayerTable table = new PlayerTable(players.size());
+        for (int row = 0; row < players.size(); row++) {
+            table.write(row, players.get(row));
+        }
+        return table;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Materialize a row as a Player.
+     */
+    public Player get(int row) {
+        Player player = new Player(new UUID(idHi[row], idLo[row]), names[row], tokenAt(row));
+        player.setRole(roles[row] == NO_ROLE ? null : ROLES[roles[row]]);
+        player.setAlive(alive.get(row));
+        player.getSession().setConnected(connected.get(row));
+        player.getSession().setWebSocketSessionId(wsSessionIds == null ? null : wsSessionIds[row]);
+        return player;
+    }
+
+    /**
+     * Materialize all rows as Players, in order.
+     */
+    public List<Player> toPlayers() {
+        List<Player> players = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            players.add(get(row));
+        }
+        return players;
+    }
+
+    public UUID getId(int row) {
+        return new UUID(idHi[row], idLo[row]);
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public Role getRole(int row) {
+        return roles[row] == NO_ROLE ? null : ROLES[roles[row]];
+    }
+
+    public String getToken(int row) {
+        return tokenAt(row);
+    }
+
+    public boolean isAlive(int row) {
+        return alive.get(row);
+    }
+
+    public boolean isConnected(int row) {
+        return connected.get(row);
+    }
+
+    private void write(int row, Player player) {
+        idHi[row] = player.getId().getMostSignificantBits();
+        idLo[row] = player.getId().getLeastSignificantBits();
+        names[row] = player.getName();
+        roles[row] = player.getRole() == null ? NO_ROLE : (byte) player.getRole().ordinal();
+        alive.set(row, player.isAlive());
+
+        PlayerSession session = player.getSession();
+        connected.set(row, session.isConnected());
+        writeToken(row, session.getPlayerToken());
+        if (session.getWebSocketSessionId() != null) {
+            if (wsSessionIds == null) {
+                wsSessionIds = new String[size];
+            }
+            wsSessionIds[row] = session.getWebSocketSessionId();
+        }
+    }
+
+    private void writeToken(int row, String token) {
+        try {
+            UUID uuid = UUID.fromString(token);
+            // Only store as longs if the string round-trips exactly
+            if (uuid.toString().equals(token)) {
+                tokenHi[row] = uuid.getMostSignificantBits();
+                tokenLo[row] = uuid.getLeastSignificantBits();
+                return;
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // Fall through to raw storage
+        }
+        if (rawTokens == null) {
+            rawTokens = new String[size];
+        }
+        rawTokens[row] = token;
+    }
+
+    private String tokenAt(int row) {
+        if (rawTokens != null && rawTokens[row] != null) {
+            return rawTokens[row];
+        }
+        return new UUID(tokenHi[row], tokenLo[row]).toString();
+    }
+}
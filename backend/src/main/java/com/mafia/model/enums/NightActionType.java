@@ -0,0 +1,21 @@
+package com.mafia.model.enums;
+
+/**
+ * Actions taken during the night, and the role allowed to take each.
+ * Resolved in this order: kills, then saves, then investigations.
+ */
+public enum NightActionType {
+    KILL(Role.MAFIA),
+    SAVE(Role.DOCTOR),
+    INVESTIGATE(Role.DETECTIVE);
+
+    private final Role actor;
+
+    NightActionType(Role actor) {
+        this.actor = actor;
+    }
+
+    public Role getActor() {
+        return actor;
+    }
+}
@@ -0,0 +1,12 @@
+package com.mafia.model.enums;
+
+/**
+ * What a night action led to, as reported to the player who took it.
+ */
+public enum NightOutcome {
+    KILLED,      // KILL: the Mafia's target died
+    SAVED,       // KILL: the target was saved; SAVE: your target was attacked and saved
+    NO_ATTACK,   // SAVE: your target was not attacked
+    MAFIA,       // INVESTIGATE: the target is Mafia
+    NOT_MAFIA    // INVESTIGATE: the target is not Mafia
+}
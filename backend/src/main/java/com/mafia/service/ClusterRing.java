@@ -0,0 +1,127 @@
+package com.mafia.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring assigning each lobby to an owner node.
+ *
+ * Every node is configured with the same node list, so all nodes agree on the
+ * owner of a lobby without talking to each other. A game's state, lane and
+ * broker subscriptions all live on its owner; other nodes redirect REST calls
+ * there and reject STOMP CONNECTs for it. Each node is placed on the ring at
+ * several virtual points so lobbies spread evenly, and adding or removing a
+ * node only moves the lobbies next to its points.
+ *
+ * With no node list configured the ring is disabled and every lobby is local.
+ */
+@Component
+public class ClusterRing {
+
+    private final String self;
+    private final List<String> nodes;
+
+    // Sorted virtual point hashes, and the node owning each point
+    private final long[] points;
+    private final String[] owners;
+
+    public ClusterRing(
+            @Value("${mafia.cluster.nodes:}") String nodeList,
+            @Value("${mafia.cluster.self:}") String self,
+            @Value("${mafia.cluster.virtual-nodes:160}") int virtualNodes) {
+        this.nodes = Arrays.stream(nodeList.split(","))
+            .map(ClusterRing::normalize)
+            .filter(node -> !node.isEmpty())
+            .distinct()
+            .toList();
+        this.self = normalize(self);
+        if (!nodes.isEmpty() && !nodes.contains(this.self)) {
+            throw new IllegalStateException("mafia.cluster.self (" + self + ") is not in mafia.cluster.nodes");
+        }
+
+        int count = nodes.size() * virtualNodes;
+        long[] hashes = new long[count];
+        String[] hashOwners = new String[count];
+        int i = 0;
+        for (String node : nodes) {
+            for (int v = 0; v < virtualNodes; v++, i++) {
+                hashes[i] = hash(node + "#" + v);
+                hashOwners[i] = node;
+            }
+        }
+        // Sort points and owners together
+        Integer[] order = new Integer[count];
+        for (int j = 0; j < count; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[count];
+        this.owners = new String[count];
+        for (int j = 0; j < count; j++) {
+            points[j] = hashes[order[j]];
+            owners[j] = hashOwners[order[j]];
+        }
+
+        if (isEnabled()) {
+            System.out.println("Cluster mode: " + this.self + " in " + nodes);
+        }
+    }
+
+    public boolean isEnabled() {
+        return !nodes.isEmpty();
+    }
+
+    /**
+     * Base URL of this node, or null when clustering is disabled.
+     */
+    public String getSelf() {
+        return isEnabled() ? self : null;
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Base URL of the node owning a lobby, or null when clustering is disabled.
+     */
+    public String ownerOf(String lobbyId) {
+        if (!isEnabled()) {
+            return null;
+        }
+        long h = hash(lobbyId.toUpperCase());
+        int index = Arrays.binarySearch(points, h);
+        if (index < 0) {
+            index = -index - 1;  // First point clockwise from h
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public boolean isLocal(String lobbyId) {
+        return !isEnabled() || self.equals(ownerOf(lobbyId));
+    }
+
+    private static String normalize(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    // 64-bit FNV-1a with a murmur3 finalizer, stable across JVMs
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
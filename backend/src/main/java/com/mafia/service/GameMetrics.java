@@ -0,0 +1,121 @@
+package com.mafia.service;
+
+import com.mafia.store.InMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Game server metrics, exported at /actuator/prometheus.
+ *
+ * Tags are low-cardinality only (STOMP command, message type, destination
+ * kind, operation name); never lobby or player ids.
+ * - mafia.lobbies.active / mafia.lobbies.spilled: lobbies on the heap / off-heap
+ * - mafia.players: players of every lobby
+ * - mafia.sessions.connected: WebSocket sessions bound to a player
+ * - mafia.stomp.commands{command}: CONNECT, SUBSCRIBE and DISCONNECT count
+ * - mafia.messages.sent{type,destination}: frames handed to the broker
+ * - mafia.broadcast.fanout{type}: recipients of each lobby broadcast
+ * - mafia.operation.duration{operation}: time on the lobby's lane
+ * Component internals (lanes, queues, tiering, encoding) are in ServerMetrics.
+ */
+@Component
+public class GameMetrics {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private InMemoryStore store;
+
+    private final Map<String, Counter> commands = new ConcurrentHashMap<>();
+    private final Map<String, Counter> sentToLobby = new ConcurrentHashMap<>();
+    private final Map<String, Counter> sentToPlayer = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> fanouts = new ConcurrentHashMap<>();
+    private final Map<String, Timer> operations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("mafia.lobbies.active", store, s -> s.getAllLobbies().size())
+            .description("Lobbies on the heap")
+            .register(registry);
+        Gauge.builder("mafia.lobbies.spilled", store, InMemoryStore::getSpilledCount)
+            .description("Lobbies spilled off-heap")
+            .register(registry);
+        Gauge.builder("mafia.players", store, InMemoryStore::getPlayerCount)
+            .description("Players in all lobbies")
+            .register(registry);
+        Gauge.builder("mafia.sessions.connected", store, InMemoryStore::getWebSocketSessionCount)
+            .description("WebSocket sessions bound to a player")
+            .register(registry);
+    }
+
+    /**
+     * Count an inbound STOMP command (CONNECT, SUBSCRIBE) or a closed session (DISCONNECT).
+     */
+    public void stompCommand(String command) {
+        commands.computeIfAbsent(command, c -> Counter.builder("mafia.stomp.commands")
+            .description("STOMP commands received, and sessions closed")
+            .tag("command", c)
+            .register(registry)).increment();
+    }
+
+    /**
+     * Count a frame broadcast to a lobby topic, and record how many players it reaches.
+     */
+    public void lobbyMessage(String type, int recipients) {
+        String key = type == null ? "UNKNOWN" : type;
+        sentToLobby.computeIfAbsent(key, t -> messagesSent(t, "lobby")).increment();
+        fanouts.computeIfAbsent(key, t -> DistributionSummary.builder("mafia.broadcast.fanout")
+            .description("Connected players a lobby broadcast is sent to")
+            .tag("type", t)
+            .publishPercentileHistogram()
+            .maximumExpectedValue(1000.0)
+            .register(registry)).record(recipients);
+    }
+
+    /**
+     * Count a frame sent to one player's queue.
+     */
+    public void playerMessage(String type) {
+        playerMessages(type, 1);
+    }
+
+    /**
+     * Count frames of one type sent to individual players' queues.
+     */
+    public void playerMessages(String type, int count) {
+        sentToPlayer.computeIfAbsent(type == null ? "UNKNOWN" : type, t -> messagesSent(t, "player")).increment(count);
+    }
+
+    /**
+     * Run an operation and record its duration.
+     */
+    public void time(String operation, Runnable task) {
+        timer(operation).record(task);
+    }
+
+    private Counter messagesSent(String type, String destination) {
+        return Counter.builder("mafia.messages.sent")
+            .description("Frames handed to the broker")
+            .tag("type", type)
+            .tag("destination", destination)
+            .register(registry);
+    }
+
+    private Timer timer(String operation) {
+        return operations.computeIfAbsent(operation, op -> Timer.builder("mafia.operation.duration")
+            .description("Time spent on the lobby's lane")
+            .tag("operation", op)
+            .publishPercentileHistogram()
+            .register(registry));
+    }
+}
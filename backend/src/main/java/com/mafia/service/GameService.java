@@ -1,19 +1,27 @@
 package com.mafia.service;
 
 import com.mafia.dto.messages.*;
+import com.mafia.messaging.MessageDispatcher;
+import com.mafia.messaging.RoleAssignedTemplate;
 import com.mafia.model.GameState;
 import com.mafia.model.Lobby;
+import com.mafia.model.NightActions;
 import com.mafia.model.Player;
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.NightActionType;
+import com.mafia.model.enums.NightOutcome;
 import com.mafia.model.enums.Role;
+import com.mafia.store.EventJournal;
 import com.mafia.store.InMemoryStore;
+import com.mafia.store.JournalEvent;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 
 /**
  * Service for game logic and WebSocket messaging.
+ * Every operation runs on the lobby's lane in LobbyExecutor.
  */
 @Service
 public class GameService {
@@ -22,87 +30,208 @@ public class GameService {
     private InMemoryStore store;
     
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private LobbyService lobbyService;
     
     @Autowired
-    private LobbyService lobbyService;
+    private LobbyExecutor lobbyExecutor;
+    
+    @Autowired
+    private MessageDispatcher messageDispatcher;
+    
+    @Autowired
+    private EventJournal journal;
+    
+    @Autowired
+    private GameMetrics metrics;
     
     /**
      * Assign roles randomly to all players in the lobby.
      * TODO: Support manual role assignment by God.
      */
     public void assignRolesRandomly(String lobbyId, Map<Role, Integer> roleCounts) {
-        Lobby lobby = store.getLobby(lobbyId);
+        lobbyExecutor.run(lobbyId, () -> metrics.time("assignRolesRandomly", () -> {
+            Lobby lobby = store.getLobby(lobbyId);
         
-        if (lobby == null) {
-            throw new IllegalArgumentException("Lobby not found");
-        }
+            if (lobby == null) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
         
-        GameState gameState = lobby.getGameState();
-        List<Player> players = lobby.getPlayers();
-        List<Role> rolePool = new ArrayList<>();
+            GameState gameState = lobby.getGameState();
+            List<Player> players = lobby.getPlayers();
+            List<Role> rolePool = new ArrayList<>();
         
-        // Build role pool
-        for (Map.Entry<Role, Integer> entry : roleCounts.entrySet()) {
-            for (int i = 0; i < entry.getValue(); i++) {
-                rolePool.add(entry.getKey());
+            // Build role pool
+            for (Map.Entry<Role, Integer> entry : roleCounts.entrySet()) {
+                for (int i = 0; i < entry.getValue(); i++) {
+                    rolePool.add(entry.getKey());
+                }
             }
-        }
         
-        // Validate role count matches player count
-        if (rolePool.size() != players.size()) {
-            throw new IllegalArgumentException("Role count must match player count");
-        }
+            // Validate role count matches player count
+            if (rolePool.size() != players.size()) {
+                throw new IllegalArgumentException("Role count must match player count");
+            }
         
-        // Shuffle and assign
-        Collections.shuffle(rolePool);
-        for (int i = 0; i < players.size(); i++) {
-            Player player = players.get(i);
-            Role role = rolePool.get(i);
-            player.setRole(role);
-            
-            // Send role assignment via WebSocket (wrapped in envelope)
-            RoleAssignedData data = new RoleAssignedData(
-                player.getId(),
-                role,
-                "You have been assigned the role: " + role.name()
-            );
-            WebSocketMessage<RoleAssignedData> message = WebSocketMessage.of(MessageType.ROLE_ASSIGNED, data);
-            messagingTemplate.convertAndSend("/queue/player/" + player.getId(), message);
-        }
+            // Shuffle and assign, then send every reveal in one batch
+            Collections.shuffle(rolePool);
+            List<MessageDispatcher.PlayerFrame> reveals = new ArrayList<>(players.size());
+            for (int i = 0; i < players.size(); i++) {
+                Player player = players.get(i);
+                Role role = rolePool.get(i);
+                lobby.assignRole(player, role);
+                journal.append(new JournalEvent.RoleAssigned(lobby.getId(), player.getId(), role));
+                reveals.add(new MessageDispatcher.PlayerFrame(player.getId(), RoleAssignedTemplate.render(player.getId(), role)));
+            }
+            messageDispatcher.sendEvents(lobby, reveals);
         
-        // Update game state
-        gameState.setPhase(com.mafia.model.enums.GamePhase.ROLES_ASSIGNED);
-        store.saveLobby(lobby);  // Save lobby (includes GameState)
+            // Update game state
+            lobby.getNightActions().advance();
+            gameState.setPhase(GamePhase.ROLES_ASSIGNED);
+            store.saveLobby(lobby);  // Save lobby (includes GameState)
+            journal.append(new JournalEvent.PhaseChanged(lobby.getId(), gameState.getPhase(), gameState.getDayCount()));
         
-        // Notify lobby
-        broadcastPhaseChange(lobby);
+            // Notify lobby
+            broadcastPhaseChange(lobby);
+        }));
     }
     
     /**
      * Transition to next phase.
      */
     public void nextPhase(String lobbyId, String announcement) {
-        Lobby lobby = store.getLobby(lobbyId);
+        lobbyExecutor.run(lobbyId, () -> metrics.time("nextPhase", () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+        
+            if (lobby == null) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
+        
+            GameState gameState = lobby.getGameState();
+            if (gameState.getPhase() == GamePhase.NIGHT) {
+                resolveNight(lobby);
+            }
+            lobby.getNightActions().advance();  // Actions sent before the change no longer count
+            gameState.nextPhase();
+            if (announcement != null && !announcement.isEmpty()) {
+                gameState.addAnnouncement(announcement);
+            }
+            store.saveLobby(lobby);  // Save lobby (includes GameState)
+            journal.append(new JournalEvent.PhaseChanged(lobby.getId(), gameState.getPhase(), gameState.getDayCount()));
+            if (announcement != null && !announcement.isEmpty()) {
+                journal.append(new JournalEvent.AnnouncementAdded(lobby.getId(), announcement));
+            }
+        
+            broadcastPhaseChange(lobby);
+        }));
+    }
+    
+    /**
+     * Record a player's night action. Runs on the caller's thread, not the
+     * lobby's lane: the action is one store into the player's own slot of the
+     * lobby's NightActions, and is only checked when the night is resolved.
+     * The player and seat come from the session attributes set at CONNECT.
+     * The lobby is only peeked, never rehydrated here: a spilled lobby has
+     * no night in progress, so the action is rejected.
+     *
+     * @return false if the session does not belong to the lobby
+     */
+    public boolean submitNightAction(String lobbyId, String wsSessionId, Map<String, Object> sessionAttributes,
+                                     NightActionType type, UUID targetId) {
+        Object playerId = sessionAttributes == null ? null : sessionAttributes.get("playerId");
+        Object seat = sessionAttributes == null ? null : sessionAttributes.get("seat");
+        if (!(playerId instanceof UUID actorId) || !(seat instanceof Integer actorSeat) || targetId == null
+                || !lobbyId.equalsIgnoreCase(store.getLobbyIdByWebSocketSession(wsSessionId))) {
+            System.err.println("Rejected " + type + " from session " + wsSessionId + " for lobby " + lobbyId);
+            return false;
+        }
+        Lobby lobby = store.peekLobby(lobbyId);
+        return lobby != null && lobby.getNightActions().submit(actorSeat, actorId, type, targetId);
+    }
+    
+    /**
+     * Resolve the night's actions in one batch, in a fixed order:
+     * 1. kill: the target with the most Mafia votes (a tie goes to the target
+     *    voted for first, in seat order)
+     * 2. save: a Doctor protecting that target prevents the kill
+     * 3. investigate: each Detective learns whether their target is Mafia
+     * Only actions by living players holding the action's role, against living
+     * players other than the God, count. Each counted actor gets a
+     * NIGHT_ACTION_RESULT; a kill is broadcast as PLAYER_ELIMINATED.
+     */
+    private void resolveNight(Lobby lobby) {
+        List<NightActions.Action> counted = new ArrayList<>();
+        Map<UUID, Integer> killVotes = new LinkedHashMap<>();
+        Set<UUID> saved = new HashSet<>();
+        for (NightActions.Action action : lobby.getNightActions().drain()) {
+            Player actor = lobby.getPlayerById(action.actorId());
+            Player target = lobby.getPlayerById(action.targetId());
+            if (actor == null || !actor.isAlive() || actor.getRole() != action.type().getActor()
+                    || target == null || !target.isAlive() || target.getRole() == Role.GOD) {
+                continue;
+            }
+            counted.add(action);
+            switch (action.type()) {
+                case KILL -> killVotes.merge(target.getId(), 1, Integer::sum);
+                case SAVE -> saved.add(target.getId());
+                case INVESTIGATE -> { }
+            }
+        }
         
-        if (lobby == null) {
-            throw new IllegalArgumentException("Lobby not found");
+        UUID killed = null;
+        int mostVotes = 0;
+        for (Map.Entry<UUID, Integer> votes : killVotes.entrySet()) {
+            if (votes.getValue() > mostVotes) {
+                killed = votes.getKey();
+                mostVotes = votes.getValue();
+            }
         }
+        boolean prevented = killed != null && saved.contains(killed);
         
-        GameState gameState = lobby.getGameState();
-        gameState.nextPhase();
-        if (announcement != null && !announcement.isEmpty()) {
-            gameState.addAnnouncement(announcement);
+        List<MessageDispatcher.PlayerFrame> results = new ArrayList<>(counted.size());
+        for (NightActions.Action action : counted) {
+            NightActionResultData data = switch (action.type()) {
+                case KILL -> new NightActionResultData(NightActionType.KILL, killed,
+                    prevented ? NightOutcome.SAVED : NightOutcome.KILLED,
+                    prevented ? "Your target was saved by the Doctor" : "Your target was killed");
+                case SAVE -> action.targetId().equals(killed)
+                    ? new NightActionResultData(NightActionType.SAVE, action.targetId(), NightOutcome.SAVED,
+                        "You saved your target from the Mafia")
+                    : new NightActionResultData(NightActionType.SAVE, action.targetId(), NightOutcome.NO_ATTACK,
+                        "Your target was not attacked");
+                case INVESTIGATE -> lobby.getPlayerById(action.targetId()).getRole() == Role.MAFIA
+                    ? new NightActionResultData(NightActionType.INVESTIGATE, action.targetId(), NightOutcome.MAFIA,
+                        "Your target is Mafia")
+                    : new NightActionResultData(NightActionType.INVESTIGATE, action.targetId(), NightOutcome.NOT_MAFIA,
+                        "Your target is not Mafia");
+            };
+            results.add(new MessageDispatcher.PlayerFrame(action.actorId(),
+                messageDispatcher.encode(WebSocketMessage.of(MessageType.NIGHT_ACTION_RESULT, data))));
         }
-        store.saveLobby(lobby);  // Save lobby (includes GameState)
+        messageDispatcher.sendEvents(lobby, results);
         
-        broadcastPhaseChange(lobby);
+        if (killed != null && !prevented) {
+            Player victim = lobby.getPlayerById(killed);
+            victim.setAlive(false);
+            lobby.markPlayerChanged(victim);
+            journal.append(new JournalEvent.PlayerEliminated(lobby.getId(), killed));
+            PlayerEliminatedData data = new PlayerEliminatedData(killed, victim.getName(),
+                victim.getName() + " was killed during the night");
+            messageDispatcher.broadcast(lobby, messageDispatcher.encode(WebSocketMessage.of(MessageType.PLAYER_ELIMINATED, data)));
+            lobbyService.requestPlayerListUpdate(lobby.getId());
+        }
     }
     
     /**
      * Broadcast phase change to all players in lobby.
+     * The encoded frame is cached per lobby version.
      */
     private void broadcastPhaseChange(Lobby lobby) {
+        byte[] frame = lobby.getFrameCache().get("phase-change", lobby.getVersion(),
+            () -> messageDispatcher.encode(buildPhaseChange(lobby)));
+        messageDispatcher.broadcast(lobby, frame);
+    }
+    
+    private WebSocketMessage<PhaseChangeData> buildPhaseChange(Lobby lobby) {
         GameState gameState = lobby.getGameState();
         
         PhaseChangeData data = new PhaseChangeData(
@@ -110,10 +239,9 @@ public class GameService {
             gameState.getDayCount(),
             gameState.getAnnouncements().isEmpty() ? 
                 "Phase changed to " + gameState.getPhase() : 
-                gameState.getAnnouncements().get(gameState.getAnnouncements().size() - 1)
+                gameState.getAnnouncements().latest()
         );
         
-        WebSocketMessage<PhaseChangeData> message = WebSocketMessage.of(MessageType.PHASE_CHANGE, data);
-        messagingTemplate.convertAndSend("/topic/lobby/" + lobby.getId(), message);
+        return WebSocketMessage.of(MessageType.PHASE_CHANGE, data);
     }
 }
@@ -0,0 +1,178 @@
+package com.mafia.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs every lobby mutation on the lobby's own serial lane.
+ *
+ * Lobby IDs are hashed onto a fixed pool of single-threaded workers, so all
+ * operations for one lobby execute in submission order without locks, while
+ * different lobbies spread across all cores.
+ *
+ * Calls made from a lobby's own worker run inline, so services can call each
+ * other without deadlocking.
+ */
+@Component
+public class LobbyExecutor {
+
+    private final ExecutorService[] workers;
+    private final Thread[] workerThreads;
+
+    // Queue depth / latency counters per lane (not per lobby: lobby IDs come from clients)
+    private final LaneStats[] stats;
+
+    public LobbyExecutor(@Value("${mafia.lobby.executor.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.workers = new ExecutorService[size];
+        this.workerThreads = new Thread[size];
+        this.stats = new LaneStats[size];
+        for (int i = 0; i < size; i++) {
+            int lane = i;
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "lobby-worker-" + lane);
+                t.setDaemon(true);
+                workerThreads[lane] = t;
+                return t;
+            });
+            stats[i] = new LaneStats();
+        }
+    }
+
+    /**
+     * Run a task on the lobby's lane and wait for its result.
+     * Runtime exceptions thrown by the task are rethrown to the caller.
+     */
+    public <T> T call(String lobbyId, Supplier<T> task) {
+        int lane = laneOf(lobbyId);
+        if (Thread.currentThread() == workerThreads[lane]) {
+            return task.get();
+        }
+
+        Future<T> future = workers[lane].submit(timed(lobbyId, task::get));
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for lobby " + lobbyId, e);
+        }
+    }
+
+    /**
+     * Run a task on the lobby's lane and wait for it to finish.
+     */
+    public void run(String lobbyId, Runnable task) {
+        call(lobbyId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Queue a task on the lobby's lane without waiting.
+     */
+    public void execute(String lobbyId, Runnable task) {
+        Callable<Object> timedTask = timed(lobbyId, () -> {
+            task.run();
+            return null;
+        });
+        workers[laneOf(lobbyId)].execute(() -> {
+            try {
+                timedTask.call();
+            } catch (Exception e) {
+                System.err.println("Lobby task failed for " + lobbyId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stats of the lane a lobby runs on (shared with the other lobbies hashed to it).
+     */
+    public LaneStats getStats(String lobbyId) {
+        return stats[laneOf(lobbyId)];
+    }
+
+    /**
+     * Stats of each lane, indexed by lane.
+     */
+    public LaneStats[] getLaneStats() {
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            worker.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private int laneOf(String lobbyId) {
+        return Math.floorMod(lobbyId.toUpperCase().hashCode(), workers.length);
+    }
+
+    private <T> Callable<T> timed(String lobbyId, Callable<T> task) {
+        LaneStats laneStats = stats[laneOf(lobbyId)];
+        laneStats.queueDepth.incrementAndGet();
+        return () -> {
+            laneStats.queueDepth.decrementAndGet();
+            long start = System.nanoTime();
+            try {
+                return task.call();
+            } finally {
+                laneStats.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * Queue depth and processing latency for one lane.
+     */
+    public static class LaneStats {
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            processed.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public int getQueueDepth() {
+            return queueDepth.get();
+        }
+
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package com.mafia.service;
 
+import com.mafia.dto.AnnouncementPage;
 import com.mafia.dto.LobbyResponse;
 import com.mafia.dto.messages.*;
+import com.mafia.messaging.BroadcastCoalescer;
+import com.mafia.messaging.MessageDispatcher;
+import com.mafia.messaging.SnapshotTemplate;
+import com.mafia.model.AnnouncementLog;
 import com.mafia.model.GameState;
 import com.mafia.model.Lobby;
 import com.mafia.model.Player;
 import com.mafia.model.enums.Role;
+import com.mafia.store.EventJournal;
 import com.mafia.store.InMemoryStore;
+import com.mafia.store.JournalEvent;
+import com.mafia.store.LobbyReaper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -16,68 +24,118 @@ import java.util.UUID;
 
 /**
  * Service for lobby management operations.
+ * Every operation runs on the lobby's lane in LobbyExecutor.
  */
 @Service
 public class LobbyService {
-    
+
     @Autowired
     private InMemoryStore store;
-    
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    @Autowired
+    private MessageDispatcher messageDispatcher;
+
+    @Autowired
+    private BroadcastCoalescer broadcastCoalescer;
+
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-    
+    private EventJournal journal;
+
+    @Autowired
+    private ClusterRing clusterRing;
+
+    @Autowired
+    private LobbyReaper lobbyReaper;
+
+    @Autowired
+    private GameMetrics metrics;
+
+    // Events kept per lobby for replay to reconnecting clients
+    @Value("${mafia.lobby.replay-buffer:256}")
+    private int replayBufferSize;
+
+    // Announcements kept per game, and how many of the latest go into snapshots
+    @Value("${mafia.game.announcements.history:500}")
+    private int announcementHistory;
+
+    @Value("${mafia.game.announcements.snapshot-tail:20}")
+    private int announcementSnapshotTail;
+
+    // Compact a lobby's players once the last one disconnects
+    @Value("${mafia.lobby.compact-idle:true}")
+    private boolean compactIdleLobbies;
+
+    /**
+     * Claim an unused lobby ID owned by this node, so a new game stays local in cluster mode.
+     * Takes about as many tries as there are nodes.
+     */
+    private String generateLocalLobbyId() {
+        return store.allocateLobbyId(clusterRing::isLocal);
+    }
+
     /**
      * Create a new lobby. Creator becomes God.
      */
     public LobbyResponse createLobby(String godName) {
-        String lobbyId = Lobby.generateId();
-        UUID godId = UUID.randomUUID();
-        String godToken = UUID.randomUUID().toString();
-        
-        // Create lobby (GameState is initialized inside Lobby constructor)
-        Lobby lobby = new Lobby(lobbyId);
-        
-        // Create God player with embedded session and GOD role
-        Player god = new Player(godId, godName, godToken);
-        god.setRole(Role.GOD);
-        lobby.addPlayer(god);
-        
-        // Save lobby and register token for lookup
-        store.saveLobby(lobby);
-        store.registerPlayerToken(godToken, lobbyId);
-        
-        // Build response
-        LobbyResponse response = LobbyResponse.fromLobby(lobby);
-        response.setPlayerToken(godToken);
-        response.setPlayerId(godId);
-        
-        return response;
-    }
-    
+        String lobbyId = generateLocalLobbyId();
+        return lobbyExecutor.call(lobbyId, () -> {
+            UUID godId = UUID.randomUUID();
+            String godToken = UUID.randomUUID().toString();
+
+            // Create lobby (GameState is initialized inside Lobby constructor)
+            Lobby lobby = new Lobby(lobbyId, replayBufferSize, announcementHistory);
+
+            // Create God player with embedded session and GOD role
+            Player god = new Player(godId, godName, godToken);
+            lobby.addPlayer(god);
+            lobby.assignRole(god, Role.GOD);
+
+            // Save lobby and register token for lookup
+            store.saveLobby(lobby);
+            store.registerPlayerToken(godToken, lobbyId);
+            journal.append(new JournalEvent.LobbyCreated(lobbyId, lobby.getMaxPlayers(), replayBufferSize, announcementHistory));
+            journal.append(new JournalEvent.PlayerJoined(lobbyId, godId, godToken, godName));
+            journal.append(new JournalEvent.RoleAssigned(lobbyId, godId, Role.GOD));
+            lobbyReaper.track(lobbyId);
+
+            // Build response
+            LobbyResponse response = LobbyResponse.fromLobby(lobby);
+            response.setPlayerToken(godToken);
+            response.setPlayerId(godId);
+
+            return response;
+        });
+    }
+
     /**
      * Join an existing lobby as a player, or reconnect if playerToken is valid.
      */
     public LobbyResponse joinLobby(String lobbyId, String playerName, String playerToken) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) {
-            throw new IllegalArgumentException("Lobby not found");
-        }
-        
-        // Check if this is a reconnection attempt
-        if (playerToken != null && !playerToken.isEmpty()) {
-            Player existingPlayer = store.getPlayerByToken(playerToken);
-            if (existingPlayer != null) {
-                // Verify player belongs to this lobby
-                String existingLobbyId = store.getLobbyIdByToken(playerToken);
-                if (existingLobbyId != null && existingLobbyId.equalsIgnoreCase(lobbyId)) {
+        return lobbyExecutor.call(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
+
+            // Check if this is a reconnection attempt. Only this lobby is looked at:
+            // a token of another lobby must not touch that lobby off its lane.
+            if (playerToken != null && !playerToken.isEmpty()
+                    && lobbyId.equalsIgnoreCase(store.getLobbyIdByToken(playerToken))) {
+                Player existingPlayer = lobby.getPlayerByToken(playerToken);
+                if (existingPlayer != null) {
                     // Update player name if changed
-                    if (playerName != null && !playerName.isEmpty() 
+                    if (playerName != null && !playerName.isEmpty()
                             && !playerName.equals(existingPlayer.getName())) {
                         existingPlayer.setName(playerName);
+                        lobby.markPlayerChanged(existingPlayer);
                         store.saveLobby(lobby);
-                        broadcastPlayerListUpdate(lobbyId);
+                        journal.append(new JournalEvent.PlayerRenamed(lobby.getId(), existingPlayer.getId(), playerName));
+                        requestPlayerListUpdate(lobbyId);
                     }
-                    
+
                     // Return existing player info
                     LobbyResponse response = LobbyResponse.fromLobby(lobby);
                     response.setPlayerToken(playerToken);
@@ -85,121 +143,272 @@ public class LobbyService {
                     return response;
                 }
             }
-        }
-        
-        // New player - create fresh
-        UUID playerId = UUID.randomUUID();
-        String newPlayerToken = UUID.randomUUID().toString();
-        
-        // Create player with embedded session
-        Player player = new Player(playerId, playerName, newPlayerToken);
-        lobby.addPlayer(player);
-        
-        // Save lobby and register token for lookup
-        store.saveLobby(lobby);
-        store.registerPlayerToken(newPlayerToken, lobbyId);
-        
-        // Broadcast player list update to all players in lobby
-        broadcastPlayerListUpdate(lobbyId);
-        
-        // Build response
-        LobbyResponse response = LobbyResponse.fromLobby(lobby);
-        response.setPlayerToken(newPlayerToken);
-        response.setPlayerId(playerId);
-        
-        return response;
-    }
-    
+
+            // New player - create fresh
+            UUID playerId = UUID.randomUUID();
+            String newPlayerToken = UUID.randomUUID().toString();
+
+            // Create player with embedded session
+            Player player = new Player(playerId, playerName, newPlayerToken);
+            lobby.addPlayer(player);
+
+            // Save lobby and register token for lookup
+            store.saveLobby(lobby);
+            store.registerPlayerToken(newPlayerToken, lobbyId);
+            journal.append(new JournalEvent.PlayerJoined(lobby.getId(), playerId, newPlayerToken, playerName));
+
+            // Broadcast player list update to all players in lobby
+            requestPlayerListUpdate(lobbyId);
+
+            // Build response
+            LobbyResponse response = LobbyResponse.fromLobby(lobby);
+            response.setPlayerToken(newPlayerToken);
+            response.setPlayerId(playerId);
+
+            return response;
+        });
+    }
+
     /**
-     * Get lobby info (non-sensitive).
+     * Get lobby info (non-sensitive) as encoded JSON.
+     * The bytes are cached per lobby version, so repeated reads don't re-serialize.
      */
-    public LobbyResponse getLobbyInfo(String lobbyId) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) {
-            throw new IllegalArgumentException("Lobby not found");
-        }
-        
-        return LobbyResponse.fromLobby(lobby);
-    }
-    
+    public byte[] getLobbyInfo(String lobbyId) {
+        return lobbyExecutor.call(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
+
+            return lobby.getFrameCache().get("lobby-info", lobby.getVersion(),
+                () -> messageDispatcher.encode(LobbyResponse.fromLobby(lobby)));
+        });
+    }
+
     /**
-     * Broadcast updated player list to all players in a lobby.
-     * Made public so GameService can call it on reconnect.
+     * Get a page of a lobby's announcement history, oldest first.
+     * Returns up to limit announcements with index < before (latest if before is null).
+     */
+    public AnnouncementPage getAnnouncements(String lobbyId, Long before, int limit) {
+        return lobbyExecutor.call(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                throw new IllegalArgumentException("Lobby not found");
+            }
+
+            AnnouncementLog log = lobby.getGameState().getAnnouncements();
+            long end = before == null ? log.getTotal() : Math.min(before, log.getTotal());
+            long start = Math.max(log.getFirstIndex(), end - limit);
+            List<String> page = log.range(start, end);
+            return new AnnouncementPage(start, page, start > log.getFirstIndex());
+        });
+    }
+
+    /**
+     * Broadcast the full player list to all players in a lobby.
+     * Routine changes go out as deltas; this is for explicit full refreshes.
+     * The encoded frame is cached per lobby version.
      */
     public void broadcastPlayerListUpdate(String lobbyId) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) return;
-        
+        lobbyExecutor.run(lobbyId, () -> metrics.time("broadcastPlayerListUpdate", () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) return;
+
+            messageDispatcher.broadcast(lobby, playerListFrame(lobby));
+        }));
+    }
+
+    /**
+     * Broadcast a PLAYER_LIST_DELTA with the players changed since the last one.
+     * Does nothing if no player changed.
+     */
+    public void broadcastPlayerListDelta(String lobbyId) {
+        lobbyExecutor.run(lobbyId, () -> metrics.time("broadcastPlayerListDelta", () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) return;
+
+            List<Player> changed = lobby.drainChangedPlayers();
+            if (changed.isEmpty()) return;
+
+            PlayerListDeltaData data = new PlayerListDeltaData(
+                lobby.getPlayerListSequence(),
+                changed.stream().map(this::toPlayerInfo).toList()
+            );
+            WebSocketMessage<PlayerListDeltaData> message = WebSocketMessage.of(MessageType.PLAYER_LIST_DELTA, data);
+            messageDispatcher.broadcast(lobby, messageDispatcher.encode(message));
+        }));
+    }
+
+    /**
+     * Send the full player list privately to the player owning a WebSocket session.
+     * Called when a client detects a gap in PLAYER_LIST_DELTA sequence numbers.
+     */
+    public void sendPlayerListToPlayer(String lobbyId, String wsSessionId) {
+        lobbyExecutor.run(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) return;
+
+            Player player = lobby.getPlayerByWebSocketSession(wsSessionId);
+            if (player == null) return;  // Session doesn't belong to this lobby
+
+            messageDispatcher.sendToPlayer(player.getId(), playerListFrame(lobby));
+        });
+    }
+
+    /**
+     * Schedule a player list delta through the coalescer, so a burst of
+     * joins/connects/disconnects produces one frame per flush window.
+     */
+    void requestPlayerListUpdate(String lobbyId) {
+        broadcastCoalescer.request(lobbyId, "player-list", () -> broadcastPlayerListDelta(lobbyId));
+    }
+
+    private byte[] playerListFrame(Lobby lobby) {
+        return lobby.getFrameCache().get("player-list", lobby.getVersion(),
+            () -> messageDispatcher.encode(buildPlayerListUpdate(lobby)));
+    }
+
+    private WebSocketMessage<PlayerListUpdateData> buildPlayerListUpdate(Lobby lobby) {
         List<PlayerListUpdateData.PlayerInfo> players = lobby.getPlayers().stream()
-            .map(p -> new PlayerListUpdateData.PlayerInfo(
-                p.getId(),
-                p.getName(),
-                p.isAlive(),
-                p.getSession().isConnected(),
-                p.getRole() == Role.GOD
-            ))
+            .map(this::toPlayerInfo)
             .toList();
-        
-        PlayerListUpdateData data = new PlayerListUpdateData(players);
-        WebSocketMessage<PlayerListUpdateData> message = WebSocketMessage.of(MessageType.PLAYER_LIST_UPDATE, data);
-        
-        messagingTemplate.convertAndSend("/topic/lobby/" + lobbyId, message);
+
+        PlayerListUpdateData data = new PlayerListUpdateData(lobby.getPlayerListSequence(), players);
+        return WebSocketMessage.of(MessageType.PLAYER_LIST_UPDATE, data);
+    }
+
+    private PlayerListUpdateData.PlayerInfo toPlayerInfo(Player p) {
+        return new PlayerListUpdateData.PlayerInfo(
+            p.getId(),
+            p.getName(),
+            p.isAlive(),
+            p.getSession().isConnected(),
+            p.getRole() == Role.GOD
+        );
     }
-    
+
     /**
-     * Mark player as disconnected (instead of removing).
+     * Mark the player owning a WebSocket session as disconnected (instead of removing).
+     * Returns the player, or null if the session is unknown or already replaced.
      */
-    public void markPlayerDisconnected(String lobbyId, Player player) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) {
-            System.out.println("Lobby " + lobbyId + " not found");
-            return;
-        }
-        
-        player.getSession().setConnected(false);
-        player.getSession().setWebSocketSessionId(null);
-        store.saveLobby(lobby);
-        
-        // Broadcast updated player list (with connection status)
-        broadcastPlayerListUpdate(lobbyId);
-        
-        System.out.println("Player " + player.getId() + " (" + player.getName() + ") marked as disconnected");
-    }
-    
+    public Player markPlayerDisconnected(String lobbyId, String wsSessionId) {
+        return lobbyExecutor.call(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                System.out.println("Lobby " + lobbyId + " not found");
+                return null;
+            }
+
+            Player player = lobby.getPlayerByWebSocketSession(wsSessionId);
+            if (player == null) {
+                return null;
+            }
+
+            lobby.detachSession(player);
+            store.saveLobby(lobby);
+
+            // Broadcast updated player list (with connection status)
+            requestPlayerListUpdate(lobbyId);
+
+            if (compactIdleLobbies && lobby.getPlayers().stream().noneMatch(p -> p.getSession().isConnected())) {
+                // Flush the pending delta now so the coalesced flush finds nothing and doesn't inflate the lobby again
+                broadcastPlayerListDelta(lobbyId);
+                lobby.compact();
+            }
+
+            System.out.println("Player " + player.getId() + " (" + player.getName() + ") marked as disconnected");
+            return player;
+        });
+    }
+
     /**
-     * Mark player as connected (on WebSocket connect).
+     * Mark the player owning a token as connected (on WebSocket connect).
      * Does NOT send snapshot - that happens on subscription.
+     * Returns the player, or null if the token is unknown.
      */
-    public void markPlayerConnected(String lobbyId, Player player, String wsSessionId) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) {
-            System.out.println("Lobby " + lobbyId + " not found");
-            return;
-        }
-        
-        player.getSession().setConnected(true);
-        player.getSession().setWebSocketSessionId(wsSessionId);
-        store.saveLobby(lobby);
-        
-        // Broadcast updated player list (with connection status) to all
-        broadcastPlayerListUpdate(lobbyId);
-        
-        System.out.println("Player " + player.getId() + " (" + player.getName() + ") marked as connected");
-    }
-    
+    public Player markPlayerConnected(String lobbyId, String playerToken, String wsSessionId) {
+        return lobbyExecutor.call(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                System.out.println("Lobby " + lobbyId + " not found");
+                return null;
+            }
+
+            Player player = lobby.getPlayerByToken(playerToken);
+            if (player == null) {
+                return null;
+            }
+
+            lobby.attachSession(player, wsSessionId);
+            store.saveLobby(lobby);
+            store.associateWebSocketSession(wsSessionId, lobbyId);
+
+            // Broadcast updated player list (with connection status) to all
+            requestPlayerListUpdate(lobbyId);
+
+            System.out.println("Player " + player.getId() + " (" + player.getName() + ") marked as connected");
+            return player;
+        });
+    }
+
     /**
-     * Send full game state snapshot to a specific player.
-     * Called when player subscribes to their queue (after connection established).
+     * Bring the player owning a WebSocket session up to date after (re)connecting.
+     * If the client reported the last event sequence it saw and every later event is
+     * still in the lobby's EventRing, only the missed events are replayed; otherwise
+     * a full game snapshot is sent.
      */
-    public void sendGameSnapshotToPlayer(String lobbyId, Player player) {
-        Lobby lobby = store.getLobby(lobbyId);
-        if (lobby == null) {
-            System.out.println("Lobby " + lobbyId + " not found for snapshot");
-            return;
-        }
-        
+    public void resumeSession(String lobbyId, String wsSessionId, Long lastSeq) {
+        lobbyExecutor.run(lobbyId, () -> {
+            Lobby lobby = store.getLobby(lobbyId);
+            if (lobby == null) {
+                System.out.println("Lobby " + lobbyId + " not found for resume");
+                return;
+            }
+
+            Player player = lobby.getPlayerByWebSocketSession(wsSessionId);
+            if (player == null) {
+                System.out.println("No player found for session " + wsSessionId + " in lobby " + lobbyId);
+                return;
+            }
+
+            if (lastSeq != null) {
+                int[] replayed = {0};
+                boolean resumed = lobby.getEventRing().replay(lastSeq, player.getId(), (seq, frame) -> {
+                    messageDispatcher.replay(player.getId(), seq, frame);
+                    replayed[0]++;
+                });
+                if (resumed) {
+                    System.out.println("Replayed " + replayed[0] + " events after seq " + lastSeq
+                        + " to player " + player.getId() + " (" + player.getName() + ")");
+                    return;
+                }
+            }
+
+            sendGameSnapshot(lobby, player);
+        });
+    }
+
+    private void sendGameSnapshot(Lobby lobby, Player player) {
+        metrics.time("sendGameSnapshot", () -> renderAndSendSnapshot(lobby, player));
+        System.out.println("Sent GAME_SNAPSHOT to player " + player.getId() + " (" + player.getName() + ")");
+    }
+
+    private void renderAndSendSnapshot(Lobby lobby, Player player) {
+        // Lobby-wide part is encoded once per version; only yourRole/alive are per recipient.
+        // Rendered frames are cached too, so players with the same view share one payload
+        // (and FrameEncoding compresses it once)
+        long version = lobby.getVersion();
+        byte[] frame = lobby.getFrameCache().get("snapshot:" + player.getRole() + ":" + player.isAlive(), version, () -> {
+            byte[] shared = lobby.getFrameCache().get("snapshot", version,
+                () -> messageDispatcher.encode(buildSharedSnapshot(lobby)));
+            return SnapshotTemplate.render(shared, player.getRole(), player.isAlive());
+        });
+        messageDispatcher.sendSnapshot(lobby, player.getId(), frame);
+    }
+
+    private GameSnapshotData.Shared buildSharedSnapshot(Lobby lobby) {
         GameState gameState = lobby.getGameState();
-        
+
         // Build player snapshots
         List<GameSnapshotData.PlayerSnapshot> playerSnapshots = lobby.getPlayers().stream()
             .map(p -> new GameSnapshotData.PlayerSnapshot(
@@ -210,20 +419,18 @@ public class LobbyService {
                 p.getRole() == Role.GOD
             ))
             .toList();
-        
-        GameSnapshotData data = GameSnapshotData.builder()
+
+        // Only the latest announcements; older ones are fetched page by page
+        List<String> announcements = gameState.getAnnouncements().tail(announcementSnapshotTail);
+
+        return GameSnapshotData.Shared.builder()
             .lobbyId(lobby.getId())
             .currentPhase(gameState.getPhase())
             .dayCount(gameState.getDayCount())
-            .yourRole(player.getRole())
-            .alive(player.isAlive())
             .players(playerSnapshots)
-            .announcements(gameState.getAnnouncements())
+            .playerListSequence(lobby.getPlayerListSequence())
+            .announcements(announcements)
+            .announcementsStart(gameState.getAnnouncements().getTotal() - announcements.size())
             .build();
-        
-        WebSocketMessage<GameSnapshotData> message = WebSocketMessage.of(MessageType.GAME_SNAPSHOT, data);
-        messagingTemplate.convertAndSend("/queue/player/" + player.getId(), message);
-        
-        System.out.println("Sent GAME_SNAPSHOT to player " + player.getId() + " (" + player.getName() + ")");
     }
 }
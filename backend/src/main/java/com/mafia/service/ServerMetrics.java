@@ -0,0 +1,158 @@
+package com.mafia.service;
+
+import com.mafia.messaging.BroadcastCoalescer;
+import com.mafia.messaging.FrameEncoding;
+import com.mafia.messaging.OutboundQueue;
+import com.mafia.store.EventJournal;
+import com.mafia.store.InMemoryStore;
+import com.mafia.store.LobbyReaper;
+import com.mafia.store.LobbyTiering;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Internal counters of the server's components, exported at /actuator/prometheus
+ * next to the GameMetrics. Read from each component's stats when scraped.
+ * - mafia.lane.queue.depth{lane} / mafia.lane.tasks{lane}: lobby lane backlog and task time
+ * - mafia.broadcast.*: coalesced player list broadcasts
+ * - mafia.tier.*: lobbies spilled off-heap and rehydrated
+ * - mafia.reaper.*: lobbies tracked and evicted by the reaper
+ * - mafia.outbound.*: per-session outbound queues and slow-consumer actions
+ * - mafia.encoding.*: frames transcoded to CBOR and compressed
+ * - mafia.journal.*: journal records appended and fsyncs
+ */
+@Component
+public class ServerMetrics {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    @Autowired
+    private BroadcastCoalescer broadcastCoalescer;
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private LobbyTiering lobbyTiering;
+
+    @Autowired
+    private LobbyReaper lobbyReaper;
+
+    @Autowired
+    private OutboundQueue outboundQueue;
+
+    @Autowired
+    private FrameEncoding frameEncoding;
+
+    @Autowired
+    private EventJournal journal;
+
+    @PostConstruct
+    public void register() {
+        LobbyExecutor.LaneStats[] lanes = lobbyExecutor.getLaneStats();
+        for (int lane = 0; lane < lanes.length; lane++) {
+            String tag = String.valueOf(lane);
+            Gauge.builder("mafia.lane.queue.depth", lanes[lane], LobbyExecutor.LaneStats::getQueueDepth)
+                .description("Tasks queued on a lobby lane")
+                .tag("lane", tag)
+                .register(registry);
+            FunctionTimer.builder("mafia.lane.tasks", lanes[lane], LobbyExecutor.LaneStats::getProcessed,
+                    LobbyExecutor.LaneStats::getTotalNanos, TimeUnit.NANOSECONDS)
+                .description("Tasks run on a lobby lane")
+                .tag("lane", tag)
+                .register(registry);
+            TimeGauge.builder("mafia.lane.tasks.max", lanes[lane], TimeUnit.MILLISECONDS,
+                    LobbyExecutor.LaneStats::getMaxMillis)
+                .description("Longest task run on a lobby lane")
+                .tag("lane", tag)
+                .register(registry);
+        }
+
+        counter("mafia.broadcast.requested", "Player list broadcasts requested",
+            broadcastCoalescer, c -> c.getStats().requested());
+        counter("mafia.broadcast.flushed", "Player list broadcasts sent after coalescing",
+            broadcastCoalescer, c -> c.getStats().flushed());
+        gauge("mafia.broadcast.pending", "Broadcasts waiting for their flush window",
+            broadcastCoalescer, c -> c.getStats().pending());
+
+        gauge("mafia.tier.spilled.bytes", "Off-heap bytes of spilled lobbies",
+            store, InMemoryStore::getSpilledBytes);
+        counter("mafia.tier.spills", "Lobbies spilled off-heap",
+            lobbyTiering, t -> t.getStats().getSpills());
+        counter("mafia.tier.rehydrations", "Spilled lobbies brought back on lookup",
+            store, InMemoryStore::getRehydrations);
+
+        gauge("mafia.reaper.tracked", "Lobbies tracked by the reaper",
+            lobbyReaper, r -> r.getStats().getTracked());
+        counter("mafia.reaper.evicted", "Abandoned lobbies deleted",
+            lobbyReaper, r -> r.getStats().getEvicted());
+        counter("mafia.reaper.visited", "Reaper wheel entries that came due",
+            lobbyReaper, r -> r.getStats().getVisited());
+
+        gauge("mafia.outbound.queued.frames", "Frames queued for WebSocket sessions",
+            outboundQueue, q -> q.getStats().getQueuedFrames());
+        gauge("mafia.outbound.queued.bytes", "Bytes queued for WebSocket sessions",
+            outboundQueue, q -> q.getStats().getQueuedBytes());
+        gauge("mafia.outbound.queued.max.bytes", "Bytes queued for the most backed-up session",
+            outboundQueue, q -> q.getStats().getMaxSessionQueuedBytes());
+        gauge("mafia.outbound.degraded", "Sessions currently skipping player list deltas",
+            outboundQueue, q -> q.getStats().getDegradedSessions());
+        counter("mafia.outbound.degradations", "Times a session became degraded",
+            outboundQueue, q -> q.getStats().getDegradedTotal());
+        counter("mafia.outbound.disconnected", "Sessions closed for being too slow or failing a write",
+            outboundQueue, q -> q.getStats().getDisconnectedTotal());
+        counter("mafia.outbound.superseded", "Queued frames replaced by a newer one",
+            outboundQueue, q -> q.getStats().getSupersededFrames());
+        counter("mafia.outbound.deltas.dropped", "Player list deltas skipped for degraded sessions",
+            outboundQueue, q -> q.getStats().getDroppedDeltas());
+        counter("mafia.outbound.resyncs", "Full player lists sent to sessions that caught up",
+            outboundQueue, q -> q.getStats().getResyncs());
+
+        gauge("mafia.encoding.sessions.cbor", "Sessions receiving CBOR frames",
+            frameEncoding, e -> e.getStats().getCborSessions());
+        gauge("mafia.encoding.sessions.deflate", "Sessions receiving compressed frames",
+            frameEncoding, e -> e.getStats().getDeflateSessions());
+        counter("mafia.encoding.rewritten", "Frames sent transcoded and/or compressed",
+            frameEncoding, e -> e.getStats().getRewrittenFrames());
+        FunctionTimer.builder("mafia.encoding.transcode", frameEncoding, e -> e.getStats().getTranscodedFrames(),
+                e -> e.getStats().getTranscodeNanos(), TimeUnit.NANOSECONDS)
+            .description("Frame bodies transcoded to CBOR")
+            .register(registry);
+        FunctionTimer.builder("mafia.encoding.compress", frameEncoding, e -> e.getStats().getCompressedFrames(),
+                e -> e.getStats().getCompressNanos(), TimeUnit.NANOSECONDS)
+            .description("Frame bodies deflated")
+            .register(registry);
+        counter("mafia.encoding.json.bytes", "JSON bytes transcoded to CBOR",
+            frameEncoding, e -> e.getStats().getJsonBytes());
+        counter("mafia.encoding.cbor.bytes", "CBOR bytes produced",
+            frameEncoding, e -> e.getStats().getCborBytes());
+        counter("mafia.encoding.compress.in.bytes", "Bytes given to the compressor",
+            frameEncoding, e -> e.getStats().getCompressInBytes());
+        counter("mafia.encoding.compress.out.bytes", "Bytes out of the compressor",
+            frameEncoding, e -> e.getStats().getCompressOutBytes());
+
+        counter("mafia.journal.appended", "Journal records appended", journal, EventJournal::getAppended);
+        counter("mafia.journal.syncs", "Journal fsyncs", journal, EventJournal::getSyncs);
+    }
+
+    private <T> void counter(String name, String description, T source, ToDoubleFunction<T> count) {
+        FunctionCounter.builder(name, source, count).description(description).register(registry);
+    }
+
+    private <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).description(description).register(registry);
+    }
+}
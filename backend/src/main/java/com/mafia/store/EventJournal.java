@@ -0,0 +1,420 @@
+package com.mafia.store;
+
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.mafia.store.LobbyCodec.readString;
+import static com.mafia.store.LobbyCodec.readUuid;
+import static com.mafia.store.LobbyCodec.writeString;
+import static com.mafia.store.LobbyCodec.writeUuid;
+
+/**
+ * Append-only journal of lobby mutations in memory-mapped segment files.
+ *
+ * Appending copies one small binary record into the mapped segment under a
+ * short lock; nothing touches the disk on the request path. A background
+ * thread fsyncs the segment every fsync interval, so all writes in that
+ * window share one sync (up to one interval of events can be lost on a
+ * machine crash; a process crash loses nothing, the pages are in the OS).
+ *
+ * Segment layout: magic, format version, then records of
+ * [int bodyLength][int crc32(body)][byte type][payload]. A zero length ends
+ * the segment. A record with a bad length or CRC (torn write) ends replay of
+ * its segment. Each start writes to a new segment, so torn tails are never
+ * appended to. Segments covered by a StoreCheckpoint are deleted; checkpoints
+ * are taken periodically, after a recovery that replayed events, and on
+ * shutdown, so the journal never holds more than about one interval of events.
+ *
+ * A journal position is the segment number in the high 32 bits and the byte
+ * offset in the low ones, so positions order like the records. Replay passes
+ * each record's position; a checkpoint stores the position at which each
+ * lobby was encoded, and recovery skips that lobby's records before it.
+ */
+@Component
+public class EventJournal {
+    private static final int MAGIC = 0x4D4A4E4C;  // "MJNL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    // Record types; append only, never renumber
+    private static final byte LOBBY_CREATED = 1;
+    private static final byte PLAYER_JOINED = 2;
+    private static final byte PLAYER_RENAMED = 3;
+    private static final byte PLAYER_CONNECTED = 4;     // Retired: skipped in old segments
+    private static final byte PLAYER_DISCONNECTED = 5;  // Retired: skipped in old segments
+    private static final byte ROLE_ASSIGNED = 6;
+    private static final byte PHASE_CHANGED = 7;
+    private static final byte ANNOUNCEMENT_ADDED = 8;
+    private static final byte LOBBY_DELETED = 9;
+    private static final byte PLAYER_ELIMINATED = 10;
+
+    private static final Role[] ROLES = Role.values();
+    private static final GamePhase[] PHASES = GamePhase.values();
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentSize;
+    private final long fsyncIntervalMs;
+
+    // Segments written before this start, replayed by StoreRecovery
+    private final List<Path> existingSegments = new ArrayList<>();
+
+    // Guarded by this
+    private MappedByteBuffer current;
+    private long currentSegment;
+    private boolean dirty;
+
+    private ScheduledExecutorService syncer;
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    public EventJournal(@Value("${mafia.journal.enabled:true}") boolean enabled,
+                        @Value("${mafia.journal.dir:data/journal}") String dir,
+                        @Value("${mafia.journal.segment-size-mb:16}") int segmentSizeMb,
+                        @Value("${mafia.journal.fsync-interval-ms:100}") long fsyncIntervalMs) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> segmentNumber(p) >= 0)
+                 .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                 .forEach(existingSegments::add);
+        }
+        long last = existingSegments.isEmpty() ? 0 : segmentNumber(existingSegments.get(existingSegments.size() - 1));
+        synchronized (this) {
+            startSegment(last + 1);
+        }
+
+        syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println("Event journal open in " + dir.toAbsolutePath() + " (segment " + currentSegment + ")");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a lobby mutation. Call on the lobby's lane after the change is applied,
+     * so a lobby's events are journaled in the order they happened.
+     */
+    public void append(JournalEvent event) {
+        if (!enabled) {
+            return;
+        }
+        byte[] body = encode(event);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        synchronized (this) {
+            int needed = RECORD_HEADER_BYTES + body.length;
+            if (current.remaining() < needed) {
+                if (SEGMENT_HEADER_BYTES + needed > segmentSize) {
+                    System.err.println("Journal record of " + body.length + " bytes exceeds segment size, dropped");
+                    return;
+                }
+                rollSegment();
+            }
+            current.putInt(body.length).putInt((int) crc.getValue()).put(body);
+            dirty = true;
+        }
+        appended.increment();
+    }
+
+    /**
+     * Position the next record will be written at. Every record appended
+     * before the call is at a lower position, every later one at a higher one.
+     */
+    public synchronized long position() {
+        if (!enabled) {
+            return 0;
+        }
+        return position(currentSegment, current.position());
+    }
+
+    static long position(long segment, int offset) {
+        return (segment << 32) | offset;
+    }
+
+    /**
+     * Decode every event written before this start, from segment fromSegment on,
+     * in order, and pass it to the consumer with its position. Earlier segments
+     * are covered by a checkpoint. Returns the number of events replayed.
+     */
+    public long replay(long fromSegment, RecordConsumer consumer) throws IOException {
+        long count = 0;
+        for (Path segment : existingSegments) {
+            if (segmentNumber(segment) >= fromSegment) {
+                count += replaySegment(segment, consumer);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Start a new segment for a checkpoint and return its number.
+     * Events in earlier segments must be covered by the checkpoint.
+     */
+    public synchronized long rollForCheckpoint() {
+        if (!enabled) {
+            return 0;
+        }
+        rollSegment();
+        return currentSegment;
+    }
+
+    /**
+     * Delete segments older than the given one, once a checkpoint covers them.
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : files.filter(p -> segmentNumber(p) >= 0 && segmentNumber(p) < segment).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    public long getSyncs() {
+        return syncs.sum();
+    }
+
+    /**
+     * Force written records to disk. Called by the sync thread every interval.
+     */
+    public void sync() {
+        MappedByteBuffer toSync;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toSync = current;
+        }
+        // Outside the lock: appends continue while the pages are written
+        toSync.force();
+        syncs.increment();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        syncer.shutdown();
+        sync();
+    }
+
+    private long replaySegment(Path segment, RecordConsumer consumer) throws IOException {
+        long count = 0;
+        long number = segmentNumber(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SEGMENT_HEADER_BYTES || buffer.getInt() != MAGIC) {
+                System.err.println("Skipping journal segment without header: " + segment);
+                return 0;
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                System.err.println("Skipping journal segment with unknown format " + version + ": " + segment);
+                return 0;
+            }
+
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                long position = position(number, buffer.position());
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length == 0) {
+                    break;  // End of written records
+                }
+                if (length < 0 || length > buffer.remaining()) {
+                    System.err.println("Torn record in " + segment + " at " + (buffer.position() - RECORD_HEADER_BYTES));
+                    break;
+                }
+                ByteBuffer body = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    System.err.println("Checksum mismatch in " + segment + ", stopping replay of segment");
+                    break;
+                }
+                try {
+                    JournalEvent event = decode(body);
+                    if (event != null) {
+                        consumer.accept(position, event);
+                        count++;
+                    }
+                } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                    System.err.println("Undecodable record in " + segment + ": " + e.getMessage());
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Caller holds the lock
+    private void rollSegment() {
+        current.force();
+        startSegment(currentSegment + 1);
+    }
+
+    // Caller holds the lock
+    private void startSegment(long number) {
+        Path path = dir.resolve(String.format("segment-%016d.journal", number));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment " + path, e);
+        }
+        current.putInt(MAGIC).putInt(FORMAT_VERSION);
+        currentSegment = number;
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith("segment-") || !name.endsWith(".journal")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring("segment-".length(), name.length() - ".journal".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(JournalEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            switch (event) {
+                case JournalEvent.LobbyCreated e -> {
+                    out.writeByte(LOBBY_CREATED);
+                    writeString(out, e.lobbyId());
+                    out.writeInt(e.maxPlayers());
+                    out.writeInt(e.replayCapacity());
+                    out.writeInt(e.announcementHistory());
+                }
+                case JournalEvent.PlayerJoined e -> {
+                    out.writeByte(PLAYER_JOINED);
+                    writeString(out, e.lobbyId());
+                    writeUuid(out, e.playerId());
+                    writeString(out, e.playerToken());
+                    writeString(out, e.name());
+                }
+                case JournalEvent.PlayerRenamed e -> {
+                    out.writeByte(PLAYER_RENAMED);
+                    writeString(out, e.lobbyId());
+                    writeUuid(out, e.playerId());
+                    writeString(out, e.name());
+                }
+                case JournalEvent.RoleAssigned e -> {
+                    out.writeByte(ROLE_ASSIGNED);
+                    writeString(out, e.lobbyId());
+                    writeUuid(out, e.playerId());
+                    out.writeByte(e.role() == null ? -1 : e.role().ordinal());
+                }
+                case JournalEvent.PhaseChanged e -> {
+                    out.writeByte(PHASE_CHANGED);
+                    writeString(out, e.lobbyId());
+                    out.writeByte(e.phase().ordinal());
+                    out.writeInt(e.dayCount());
+                }
+                case JournalEvent.AnnouncementAdded e -> {
+                    out.writeByte(ANNOUNCEMENT_ADDED);
+                    writeString(out, e.lobbyId());
+                    writeString(out, e.message());
+                }
+                case JournalEvent.PlayerEliminated e -> {
+                    out.writeByte(PLAYER_ELIMINATED);
+                    writeString(out, e.lobbyId());
+                    writeUuid(out, e.playerId());
+                }
+                case JournalEvent.LobbyDeleted e -> {
+                    out.writeByte(LOBBY_DELETED);
+                    writeString(out, e.lobbyId());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // Not thrown by ByteArrayOutputStream
+        }
+        return bytes.toByteArray();
+    }
+
+    // Null for retired record types
+    private static JournalEvent decode(ByteBuffer in) {
+        byte type = in.get();
+        String lobbyId = readString(in);
+        return switch (type) {
+            case LOBBY_CREATED -> new JournalEvent.LobbyCreated(lobbyId, in.getInt(), in.getInt(), in.getInt());
+            case PLAYER_JOINED -> new JournalEvent.PlayerJoined(lobbyId, readUuid(in), readString(in), readString(in));
+            case PLAYER_RENAMED -> new JournalEvent.PlayerRenamed(lobbyId, readUuid(in), readString(in));
+            case PLAYER_CONNECTED, PLAYER_DISCONNECTED -> null;
+            case ROLE_ASSIGNED -> {
+                UUID playerId = readUuid(in);
+                byte role = in.get();
+                yield new JournalEvent.RoleAssigned(lobbyId, playerId, role < 0 ? null : ROLES[role]);
+            }
+            case PHASE_CHANGED -> new JournalEvent.PhaseChanged(lobbyId, PHASES[in.get()], in.getInt());
+            case ANNOUNCEMENT_ADDED -> new JournalEvent.AnnouncementAdded(lobbyId, readString(in));
+            case PLAYER_ELIMINATED -> new JournalEvent.PlayerEliminated(lobbyId, readUuid(in));
+            case LOBBY_DELETED -> new JournalEvent.LobbyDeleted(lobbyId);
+            default -> throw new IllegalArgumentException("Unknown journal record type " + type);
+        };
+    }
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long position, JournalEvent event);
+    }
+}
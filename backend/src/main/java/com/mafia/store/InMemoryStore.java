@@ -2,16 +2,42 @@ package com.mafia.store;
 
 import com.mafia.model.Lobby;
 import com.mafia.model.Player;
+import com.mafia.model.PlayerTable;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * In-memory storage for all game state.
+ * Tokens and WebSocket sessions map to their lobby ID here; the player
+ * itself is looked up in that lobby's own index, on the lobby's lane (a
+ * lookup may inflate a compacted lobby), so both are hash lookups
+ * independent of lobby size.
  * 
- * TODO: Replace with persistent storage (database, Redis) for production.
- * Current implementation loses all data on server restart.
+ * Lobby mutations are recorded in the EventJournal by the services, the store
+ * is checkpointed periodically and on graceful shutdown, one lobby at a time
+ * on its lane (StoreCheckpoint), and StoreRecovery rebuilds it from both on
+ * startup. A new lobby is saved before its creation is journaled, so a
+ * checkpoint that lists the lobbies after rolling the journal sees every
+ * lobby with events in the older segments.
+ * 
+ * Dormant lobbies can be spilled off-heap (see LobbyTiering): they leave the
+ * lobbies map and are kept as LobbyCodec bytes in direct buffers. getLobby
+ * rehydrates them transparently on first access.
+ * 
+ * Abandoned lobbies are removed by LobbyReaper through deleteLobby, which
+ * also drops their tokens and session mappings, and frees their IDs in the
+ * LobbyIdAllocator.
  */
 @Component
 public class InMemoryStore {
@@ -25,17 +51,193 @@ public class InMemoryStore {
     // webSocketSessionId -> lobbyId (for disconnect handling)
     private final Map<String, String> wsSessionToLobby = new ConcurrentHashMap<>();
     
+    // lobbyId -> encoded lobby in a direct buffer, while spilled off-heap
+    private final Map<String, SpilledLobby> spilled = new ConcurrentHashMap<>();
+    private final AtomicLong spilledBytes = new AtomicLong();
+    private final LongAdder rehydrations = new LongAdder();
+    
+    private final LobbyIdAllocator idAllocator = new LobbyIdAllocator();
+    
     // Lobby operations
+    /**
+     * Claim a new, unused lobby ID that accept allows.
+     * The ID stays taken until the lobby is deleted.
+     */
+    public String allocateLobbyId(Predicate<String> accept) {
+        return idAllocator.allocate(accept);
+    }
+    
+    // Saving a lobby bumps its version, so cached frames are re-encoded on next use
     public void saveLobby(Lobby lobby) {
-        lobbies.put(lobby.getId().toUpperCase(), lobby);
+        lobby.incrementVersion();
+        lobby.touch();
+        String key = lobby.getId().toUpperCase();
+        if (lobbies.put(key, lobby) == null) {
+            idAllocator.reserve(key);  // Already claimed unless recovered or rehydrated
+        }
     }
     
-    public Lobby getLobby(String lobbyId) {
+    // Put back a lobby from a checkpoint, registering its players' tokens
+    public void restoreLobby(Lobby lobby) {
+        for (Player player : lobby.getPlayers()) {
+            tokenToLobby.put(player.getSession().getPlayerToken(), lobby.getId());
+        }
+        String key = lobby.getId().toUpperCase();
+        lobbies.put(key, lobby);
+        idAllocator.reserve(key);
+    }
+    
+    /**
+     * Whether a lobby exists, on the heap or spilled. Does not rehydrate.
+     */
+    public boolean containsLobby(String lobbyId) {
+        String key = lobbyId.toUpperCase();
+        return lobbies.containsKey(key) || spilled.containsKey(key);
+    }
+    
+    /**
+     * The lobby if it is on the heap; null if spilled or missing. Does not rehydrate.
+     */
+    public Lobby peekLobby(String lobbyId) {
         return lobbies.get(lobbyId.toUpperCase());
     }
     
+    public Lobby getLobby(String lobbyId) {
+        String key = lobbyId.toUpperCase();
+        Lobby lobby = lobbies.get(key);
+        if (lobby != null || spilled.isEmpty()) {
+            return lobby;
+        }
+        // Atomic per key: concurrent lookups of a spilled lobby rehydrate it once.
+        // The spilled copy is only dropped once the lobby is back in the map, so a
+        // lobby is always in at least one of them (checkpoints rely on this).
+        SpilledLobby[] rehydrated = new SpilledLobby[1];
+        lobby = lobbies.computeIfAbsent(key, k -> {
+            SpilledLobby entry = spilled.get(k);
+            if (entry == null) {
+                return null;
+            }
+            rehydrated[0] = entry;
+            return LobbyCodec.decode(entry.data().duplicate());
+        });
+        if (rehydrated[0] != null && spilled.remove(key, rehydrated[0])) {
+            spilledBytes.addAndGet(-rehydrated[0].data().capacity());
+            rehydrations.increment();
+        }
+        return lobby;
+    }
+    
+    // Lobbies on the heap (not spilled ones)
+    public Collection<Lobby> getAllLobbies() {
+        return lobbies.values();
+    }
+    
+    /**
+     * Remove a lobby with its player tokens and WebSocket session mappings.
+     * Call on the lobby's lane.
+     */
     public void deleteLobby(String lobbyId) {
-        lobbies.remove(lobbyId.toUpperCase());
+        String key = lobbyId.toUpperCase();
+        Lobby lobby = lobbies.remove(key);
+        SpilledLobby entry = spilled.remove(key);
+        idAllocator.release(key);
+        if (entry != null) {
+            spilledBytes.addAndGet(-entry.data().capacity());
+            if (lobby == null) {
+                lobby = LobbyCodec.decode(entry.data().duplicate());  // Only to find its tokens
+            }
+        }
+        if (lobby == null) {
+            return;
+        }
+        PlayerTable table = lobby.getCompactPlayers();
+        if (table != null) {
+            // Compacted lobbies have nobody connected, so no sessions to drop
+            for (int row = 0; row < table.size(); row++) {
+                tokenToLobby.remove(table.getToken(row));
+            }
+            return;
+        }
+        for (Player player : lobby.getPlayers()) {
+            tokenToLobby.remove(player.getSession().getPlayerToken());
+            String wsSessionId = player.getSession().getWebSocketSessionId();
+            if (wsSessionId != null) {
+                wsSessionToLobby.remove(wsSessionId);
+            }
+        }
+    }
+    
+    // Tiering
+    /**
+     * Move a lobby off-heap. Call on the lobby's lane.
+     * Returns false if the lobby is no longer the one stored under its id.
+     */
+    public boolean spill(Lobby lobby) {
+        String key = lobby.getId().toUpperCase();
+        if (lobbies.get(key) != lobby) {
+            return false;
+        }
+        byte[] bytes = LobbyCodec.encode(lobby);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        // Publish the spilled copy before removing, so lookups always find one of them
+        SpilledLobby previous = spilled.put(key, new SpilledLobby(buffer, lobby.getLastActivity()));
+        if (previous != null) {
+            spilledBytes.addAndGet(-previous.data().capacity());  // Rehydrated copy not dropped yet
+        }
+        spilledBytes.addAndGet(bytes.length);
+        lobbies.remove(key, lobby);
+        return true;
+    }
+    
+    /**
+     * IDs of every lobby, on the heap or spilled (for checkpoints).
+     */
+    public List<String> getLobbyIds() {
+        Set<String> ids = new HashSet<>(lobbies.keySet());
+        ids.addAll(spilled.keySet());
+        return new ArrayList<>(ids);
+    }
+    
+    /**
+     * Encoded copy of a lobby, from the heap or its spilled copy, without
+     * rehydrating it; null if it doesn't exist. Call on the lobby's lane.
+     */
+    public byte[] encodeLobby(String lobbyId) {
+        String key = lobbyId.toUpperCase();
+        Lobby lobby = lobbies.get(key);
+        if (lobby != null) {
+            return LobbyCodec.encode(lobby);
+        }
+        SpilledLobby entry = spilled.get(key);
+        if (entry == null) {
+            // Rehydrated since the first look: the heap copy is in place before the spilled one goes
+            lobby = lobbies.get(key);
+            return lobby == null ? null : LobbyCodec.encode(lobby);
+        }
+        ByteBuffer data = entry.data();
+        byte[] bytes = new byte[data.capacity()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * When a spilled lobby was last active, or -1 if it is not spilled.
+     */
+    public long getSpilledLastActivity(String lobbyId) {
+        SpilledLobby entry = spilled.get(lobbyId.toUpperCase());
+        return entry == null ? -1 : entry.lastActivity();
+    }
+    
+    public int getSpilledCount() {
+        return spilled.size();
+    }
+    
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+    
+    public long getRehydrations() {
+        return rehydrations.sum();
     }
     
     // Token -> Player lookup (for authentication)
@@ -43,24 +245,15 @@ public class InMemoryStore {
         tokenToLobby.put(playerToken, lobbyId);
     }
     
-    public Player getPlayerByToken(String playerToken) {
-        String lobbyId = tokenToLobby.get(playerToken);
-        if (lobbyId == null) return null;
-        
-        Lobby lobby = lobbies.get(lobbyId.toUpperCase());
-        if (lobby == null) return null;
-        
-        // Find player with matching token
-        return lobby.getPlayers().stream()
-                .filter(p -> playerToken.equals(p.getSession().getPlayerToken()))
-                .findFirst()
-                .orElse(null);
-    }
-    
     public String getLobbyIdByToken(String playerToken) {
         return tokenToLobby.get(playerToken);
     }
     
+    // Players of every lobby, spilled ones included (each has a token)
+    public int getPlayerCount() {
+        return tokenToLobby.size();
+    }
+    
     // WebSocket session -> Lobby lookup (for disconnect handling)
     public void associateWebSocketSession(String wsSessionId, String lobbyId) {
         wsSessionToLobby.put(wsSessionId, lobbyId);
@@ -74,18 +267,9 @@ public class InMemoryStore {
         wsSessionToLobby.remove(wsSessionId);
     }
     
-    // Helper: Find player by WebSocket session
-    public Player getPlayerByWebSocketSession(String wsSessionId) {
-        String lobbyId = wsSessionToLobby.get(wsSessionId);
-        if (lobbyId == null) return null;
-        
-        Lobby lobby = lobbies.get(lobbyId.toUpperCase());
-        if (lobby == null) return null;
-        
-        return lobby.getPlayers().stream()
-                .filter(p -> wsSessionId.equals(p.getSession().getWebSocketSessionId()))
-                .findFirst()
-                .orElse(null);
+    public int getWebSocketSessionCount() {
+        return wsSessionToLobby.size();
     }
+    
+    private record SpilledLobby(ByteBuffer data, long lastActivity) {}
 }
-
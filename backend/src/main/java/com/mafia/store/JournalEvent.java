@@ -0,0 +1,33 @@
+package com.mafia.store;
+
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+
+import java.util.UUID;
+
+/**
+ * A lobby mutation as recorded in the EventJournal.
+ * Replaying the events of a lobby in order rebuilds its state.
+ * Connection changes are not journaled: sessions don't survive a restart.
+ */
+public sealed interface JournalEvent {
+
+    String lobbyId();
+
+    record LobbyCreated(String lobbyId, int maxPlayers, int replayCapacity, int announcementHistory)
+            implements JournalEvent {}
+
+    record PlayerJoined(String lobbyId, UUID playerId, String playerToken, String name) implements JournalEvent {}
+
+    record PlayerRenamed(String lobbyId, UUID playerId, String name) implements JournalEvent {}
+
+    record RoleAssigned(String lobbyId, UUID playerId, Role role) implements JournalEvent {}
+
+    record PhaseChanged(String lobbyId, GamePhase phase, int dayCount) implements JournalEvent {}
+
+    record AnnouncementAdded(String lobbyId, String message) implements JournalEvent {}
+
+    record PlayerEliminated(String lobbyId, UUID playerId) implements JournalEvent {}
+
+    record LobbyDeleted(String lobbyId) implements JournalEvent {}
+}
@@ -0,0 +1,174 @@
+package com.mafia.store;
+
+import com.mafia.model.AnnouncementLog;
+import com.mafia.model.GameState;
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.model.PlayerTable;
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary form of a Lobby, used by checkpoints.
+ *
+ * Schema tolerance: fields are only ever appended, never reordered or removed.
+ * Players are length-prefixed sub-records. A reader skips trailing fields it
+ * doesn't know and defaults fields missing from older records, so checkpoints
+ * stay readable across versions in both directions.
+ *
+ * Connection state is not encoded: sessions don't outlive the process.
+ */
+public final class LobbyCodec {
+    private static final Role[] ROLES = Role.values();
+    private static final GamePhase[] PHASES = GamePhase.values();
+
+    private LobbyCodec() {
+    }
+
+    /**
+     * Encode a lobby. Must be called on the lobby's lane.
+     */
+    public static byte[] encode(Lobby lobby) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeString(out, lobby.getId());
+            out.writeInt(lobby.getMaxPlayers());
+            out.writeInt(lobby.getEventRing().getCapacity());
+
+            GameState gameState = lobby.getGameState();
+            AnnouncementLog announcements = gameState.getAnnouncements();
+            out.writeInt(announcements.getCapacity());
+            out.writeByte(gameState.getPhase().ordinal());
+            out.writeInt(gameState.getDayCount());
+            out.writeLong(announcements.getTotal());
+            List<String> held = announcements.range(announcements.getFirstIndex(), announcements.getTotal());
+            out.writeInt(held.size());
+            for (String message : held) {
+                writeString(out, message);
+            }
+
+            ByteArrayOutputStream playerBytes = new ByteArrayOutputStream(96);
+            DataOutputStream playerOut = new DataOutputStream(playerBytes);
+            PlayerTable table = lobby.getCompactPlayers();
+            if (table != null) {
+                // Idle lobby: read the columns instead of inflating it
+                out.writeInt(table.size());
+                for (int row = 0; row < table.size(); row++) {
+                    playerBytes.reset();
+                    writePlayer(playerOut, table.getId(row), table.getName(row), table.getToken(row),
+                        table.getRole(row), table.isAlive(row));
+                    out.writeInt(playerBytes.size());
+                    playerBytes.writeTo(out);
+                }
+            } else {
+                List<Player> players = lobby.getPlayers();
+                out.writeInt(players.size());
+                for (Player player : players) {
+                    playerBytes.reset();
+                    writePlayer(playerOut, player.getId(), player.getName(), player.getSession().getPlayerToken(),
+                        player.getRole(), player.isAlive());
+                    out.writeInt(playerBytes.size());
+                    playerBytes.writeTo(out);
+                }
+            }
+            // New lobby fields go here
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // Not thrown by ByteArrayOutputStream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writePlayer(DataOutputStream out, UUID id, String name, String token, Role role, boolean alive)
+            throws IOException {
+        writeUuid(out, id);
+        writeString(out, name);
+        writeString(out, token);
+        out.writeByte(role == null ? -1 : role.ordinal());
+        out.writeBoolean(alive);
+    }
+
+    /**
+     * Decode a lobby written by encode. All players come back disconnected.
+     */
+    public static Lobby decode(ByteBuffer in) {
+        String id = readString(in);
+        int maxPlayers = in.getInt();
+        int replayCapacity = in.getInt();
+        int announcementCapacity = in.getInt();
+
+        Lobby lobby = new Lobby(id, replayCapacity, announcementCapacity);
+        lobby.setMaxPlayers(maxPlayers);
+
+        GameState gameState = lobby.getGameState();
+        gameState.setPhase(PHASES[in.get()]);
+        gameState.setDayCount(in.getInt());
+        long total = in.getLong();
+        int heldCount = in.getInt();
+        List<String> held = new ArrayList<>(heldCount);
+        for (int i = 0; i < heldCount; i++) {
+            held.add(readString(in));
+        }
+        gameState.getAnnouncements().restore(total, held);
+
+        int playerCount = in.getInt();
+        for (int i = 0; i < playerCount; i++) {
+            int length = in.getInt();
+            ByteBuffer record = in.slice(in.position(), length);
+            in.position(in.position() + length);
+
+            Player player = new Player(readUuid(record), readString(record), readString(record));
+            byte role = record.get();
+            player.setAlive(record.get() != 0);
+            // Fields added to players later: read only if record.hasRemaining()
+            lobby.addPlayer(player);
+            if (role >= 0) {
+                lobby.assignRole(player, ROLES[role]);
+            }
+        }
+        // Lobby fields added later: read only if in.hasRemaining()
+
+        lobby.drainChangedPlayers();  // Restored players aren't news to anyone
+        return lobby;
+    }
+
+    // Strings are an int byte length (-1 = null) followed by UTF-8
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+}
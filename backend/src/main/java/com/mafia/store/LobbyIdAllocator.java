@@ -0,0 +1,121 @@
+package com.mafia.store;
+
+import java.security.SecureRandom;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Hands out unique 6-character lobby IDs ([A-Z0-9], 36^6 of them).
+ *
+ * IDs are a counter run through a keyed permutation of the ID space (a
+ * 4-round Feistel network over 32 bits, cycle-walked down to 36^6), so they
+ * look random but never repeat until the whole space has been used. The key
+ * is drawn once per process; there is no shared random generator and no lock,
+ * just one atomic increment per ID.
+ *
+ * Each ID is claimed in a concurrent set of live IDs, which also holds the
+ * IDs of restored lobbies, so an ID in use is never handed out again (a
+ * restarted process has a new key, so its sequence may hit restored IDs;
+ * those are skipped). Released IDs become free again, but only come round
+ * after the rest of the space, so an old link never lands in a newer game.
+ */
+final class LobbyIdAllocator {
+    private static final int LENGTH = 6;
+    private static final long SPACE = 2_176_782_336L;  // 36^6
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    private static final int ROUNDS = 4;
+
+    private final long space;
+    private final int halfBits;       // Feistel half width: the permuted range is 2^(2 * halfBits)
+    private final long halfMask;
+    private final int[] keys = new int[ROUNDS];
+    private final AtomicLong next = new AtomicLong();
+    private final Set<String> live = ConcurrentHashMap.newKeySet();
+
+    LobbyIdAllocator() {
+        this(SPACE);
+    }
+
+    /**
+     * Allocator over the first space IDs only; tests use a small space to run a full cycle.
+     */
+    LobbyIdAllocator(long space) {
+        this.space = space;
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, space - 1));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        SecureRandom random = new SecureRandom();
+        for (int i = 0; i < ROUNDS; i++) {
+            keys[i] = random.nextInt();
+        }
+    }
+
+    /**
+     * Claim the next free ID that accept allows (e.g. one owned by this node).
+     *
+     * @throws IllegalStateException if no acceptable ID is free
+     */
+    String allocate(Predicate<String> accept) {
+        for (long tries = 0; tries < space; tries++) {
+            String id = encode(permute(next.getAndIncrement() % space));
+            if (accept.test(id) && live.add(id)) {
+                return id;
+            }
+        }
+        throw new IllegalStateException("No free lobby IDs");
+    }
+
+    /**
+     * Mark an existing lobby's ID as in use (restored or saved under its own ID).
+     */
+    void reserve(String id) {
+        live.add(id);
+    }
+
+    void release(String id) {
+        live.remove(id);
+    }
+
+    // Bijection on [0, space): re-apply the permutation until the value falls inside
+    private long permute(long index) {
+        long value = index;
+        do {
+            value = feistel(value);
+        } while (value >= space);
+        return value;
+    }
+
+    // 32 bits (two 16-bit halves) for the full ID space
+    private long feistel(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int key : keys) {
+            long mixed = left ^ (round((int) right, key) & halfMask);
+            left = right;
+            right = mixed;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // Any function works for a Feistel round; this one mixes well (murmur3 finalizer)
+    private static int round(int half, int key) {
+        int h = half ^ key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static String encode(long value) {
+        char[] id = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            id[i] = ALPHABET[(int) (value % ALPHABET.length)];
+            value /= ALPHABET.length;
+        }
+        return new String(id);
+    }
+}
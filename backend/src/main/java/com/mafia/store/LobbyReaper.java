@@ -0,0 +1,214 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.service.LobbyExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evicts abandoned lobbies with a hashed timing wheel.
+ *
+ * Every lobby has one entry in the wheel, in the slot of the tick when it
+ * could expire at the earliest. Each tick only visits its own slot, so the
+ * cost per tick depends on how many lobbies come due, not on how many exist.
+ * Activity doesn't move entries: when an entry comes due, the lobby's
+ * last activity is checked and the entry is put back at the new deadline if
+ * the lobby was used since.
+ *
+ * A lobby expires when nobody is connected and it has been idle for
+ * idle-minutes. Deadlines are read off the lane (last activity is volatile)
+ * and checked again on the lane before evicting. Eviction runs
+ * on the lobby's lane. It drops the lobby, its tokens and session mappings,
+ * its spilled copy, and journals LobbyDeleted. After that the
+ * lobby ID is free for reuse.
+ */
+@Component
+public class LobbyReaper {
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    @Autowired
+    private EventJournal journal;
+
+    private final boolean enabled;
+    private final long idleMillis;
+    private final long tickMillis;
+    private final int mask;
+
+    // Slots of entries; only touched by the reaper thread
+    private final ArrayDeque<Entry>[] wheel;
+    // Entries scheduled from other threads, moved into the wheel on the next tick
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final long startMillis = System.currentTimeMillis();
+    private long nextTick;  // Reaper thread only
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lobby-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicInteger tracked = new AtomicInteger();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder visited = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public LobbyReaper(
+            @Value("${mafia.reaper.enabled:true}") boolean enabled,
+            @Value("${mafia.reaper.idle-minutes:1440}") long idleMinutes,
+            @Value("${mafia.reaper.wheel-slots:4096}") int wheelSlots) {
+        this.enabled = enabled;
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+
+        int slots = Integer.highestOneBit(Math.max(16, wheelSlots));
+        this.mask = slots - 1;
+        // One revolution covers the timeout, so most entries are visited once
+        this.tickMillis = Math.max(100, idleMillis / slots + 1);
+        this.wheel = new ArrayDeque[slots];
+        for (int i = 0; i < slots; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Start tracking a new or restored lobby.
+     */
+    public void track(String lobbyId) {
+        if (!enabled) {
+            return;
+        }
+        tracked.incrementAndGet();
+        // Earliest a lobby can expire; the real deadline is checked when it comes due
+        schedule(lobbyId, System.currentTimeMillis() + idleMillis);
+    }
+
+    private void schedule(String lobbyId, long deadline) {
+        pending.add(new Entry(lobbyId, Math.max(nextTickOf(deadline), 0)));
+    }
+
+    private long nextTickOf(long time) {
+        return (time - startMillis + tickMillis - 1) / tickMillis;
+    }
+
+    /**
+     * Process every tick that has elapsed (normally one).
+     */
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            long currentTick = (now - startMillis) / tickMillis;
+            Entry entry;
+            while ((entry = pending.poll()) != null) {
+                // Entries already due go into the slot processed next
+                wheel[(int) (Math.max(entry.tick, nextTick) & mask)].add(entry);
+            }
+            for (; nextTick <= currentTick; nextTick++) {
+                Iterator<Entry> slot = wheel[(int) (nextTick & mask)].iterator();
+                while (slot.hasNext()) {
+                    Entry e = slot.next();
+                    if (e.tick > nextTick) {
+                        continue;  // Due in a later revolution
+                    }
+                    slot.remove();
+                    visited.increment();
+                    visit(e.lobbyId, now);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Lobby reaper tick failed: " + e.getMessage());
+        }
+    }
+
+    private void visit(String lobbyId, long now) {
+        long deadline = deadlineOf(lobbyId);
+        if (deadline < 0) {
+            tracked.decrementAndGet();  // Deleted some other way
+        } else if (deadline > now) {
+            schedule(lobbyId, deadline);  // Used since it was scheduled
+        } else {
+            lobbyExecutor.execute(lobbyId, () -> evictIfExpired(lobbyId));
+        }
+    }
+
+    // Runs on the lobby's lane, so nothing can change the lobby meanwhile
+    private void evictIfExpired(String lobbyId) {
+        long now = System.currentTimeMillis();
+        long deadline = deadlineOf(lobbyId);
+        if (deadline < 0) {
+            tracked.decrementAndGet();
+            return;
+        }
+        if (deadline > now) {
+            schedule(lobbyId, deadline);
+            return;
+        }
+        Lobby lobby = store.peekLobby(lobbyId);
+        if (lobby != null && lobby.hasConnectedPlayers()) {
+            schedule(lobbyId, now + idleMillis);  // Idle but still in use
+            return;
+        }
+
+        store.deleteLobby(lobbyId);
+        journal.append(new JournalEvent.LobbyDeleted(lobbyId));
+        tracked.decrementAndGet();
+        evicted.increment();
+        System.out.println("Reaper: evicted lobby " + lobbyId);
+    }
+
+    /**
+     * When the lobby expires if left alone, or -1 if it no longer exists.
+     * Spilled lobbies are checked without rehydrating them.
+     */
+    private long deadlineOf(String lobbyId) {
+        Lobby lobby = store.peekLobby(lobbyId);
+        long lastActivity = lobby != null ? lobby.getLastActivity() : store.getSpilledLastActivity(lobbyId);
+        return lastActivity < 0 ? -1 : lastActivity + idleMillis;
+    }
+
+    public Stats getStats() {
+        return new Stats(tracked.get(), evicted.sum(), visited.sum(), wheel.length, tickMillis);
+    }
+
+    private record Entry(String lobbyId, long tick) {}
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int tracked;
+        private final long evicted;
+        private final long visited;   // Wheel entries that came due
+        private final int wheelSlots;
+        private final long tickMillis;
+    }
+}
@@ -0,0 +1,112 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.service.LobbyExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spills dormant lobbies off-heap.
+ *
+ * A periodic scan picks lobbies not saved for the idle threshold and, on each
+ * lobby's lane, spills it if it is still idle and nobody is connected. The
+ * store rehydrates a spilled lobby on its next lookup, so callers never see
+ * the difference. Long-running nodes keep only active lobbies on the heap.
+ */
+@Component
+public class LobbyTiering {
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    private final boolean enabled;
+    private final long idleMillis;
+    private final long scanIntervalSeconds;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lobby-tiering");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder spills = new LongAdder();
+
+    public LobbyTiering(
+            @Value("${mafia.tier.enabled:true}") boolean enabled,
+            @Value("${mafia.tier.idle-minutes:30}") long idleMinutes,
+            @Value("${mafia.tier.scan-interval-seconds:60}") long scanIntervalSeconds) {
+        this.enabled = enabled;
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        this.scanIntervalSeconds = scanIntervalSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::scan, scanIntervalSeconds, scanIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Spill every lobby idle past the threshold. Returns how many were queued.
+     */
+    public int scan() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        List<Lobby> candidates = new ArrayList<>();
+        for (Lobby lobby : store.getAllLobbies()) {
+            if (lobby.getLastActivity() < cutoff) {
+                candidates.add(lobby);
+            }
+        }
+        for (Lobby lobby : candidates) {
+            lobbyExecutor.execute(lobby.getId(), () -> {
+                // Re-check on the lane: a join or reconnect may have landed since the scan
+                if (lobby.getLastActivity() >= cutoff || lobby.hasConnectedPlayers()) {
+                    return;
+                }
+                if (store.spill(lobby)) {
+                    spills.increment();
+                }
+            });
+        }
+        if (!candidates.isEmpty()) {
+            System.out.println("Tiering: spilling " + candidates.size() + " idle lobbies");
+        }
+        return candidates.size();
+    }
+
+    public Stats getStats() {
+        return new Stats(store.getAllLobbies().size(), store.getSpilledCount(),
+            store.getSpilledBytes(), spills.sum(), store.getRehydrations());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+        private final int resident;
+        private final int spilled;
+        private final long spilledBytes;
+        private final long spills;
+        private final long rehydrations;
+    }
+}
@@ -0,0 +1,353 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.service.LobbyExecutor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary checkpoint of the whole store, for fast warm restarts.
+ *
+ * Written every interval-minutes while the server runs, after a recovery
+ * that replayed journal events, and on graceful shutdown (after the web
+ * server has stopped), so the journal stays short.
+ *
+ * Nothing is paused: the journal is rolled, then each lobby is encoded with
+ * LobbyCodec on its own lane, between its other tasks, together with the
+ * journal position at that moment. The lobby's events before that position
+ * are in the checkpoint and the later ones are in the journal, so restoring
+ * the lobby and replaying only its later events is exact. Lobbies are
+ * queued in batches of ENCODE_BATCH, so a lane only ever has its share of
+ * one batch queued ahead of its own work. Every lobby with events before the roll is
+ * listed (see InMemoryStore), so the segments before it can be deleted once
+ * the file is written. The file is written to a temp name, fsynced and
+ * renamed, so a crash never leaves a half-written checkpoint.
+ *
+ * Layout: magic, format version, first uncovered journal segment, lobby count,
+ * then [int length][int crc32][long journal position][LobbyCodec record] per
+ * lobby, the checksum covering position and record. Format 1 files (written
+ * with the lanes paused) have no position: they cover nothing past the
+ * segment. Restore streams the file through a FileChannel and decodes batches
+ * of records in parallel. A file that doesn't parse fails the restore with
+ * an IOException.
+ */
+@Component
+public class StoreCheckpoint {
+    private static final int MAGIC = 0x4D434B50;  // "MCKP"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+    private static final int DECODE_BATCH = 512;
+    private static final int ENCODE_BATCH = 512;
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private EventJournal journal;
+
+    @Autowired
+    private LobbyExecutor lobbyExecutor;
+
+    @Value("${mafia.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mafia.checkpoint.file:data/checkpoint.bin}")
+    private String file;
+
+    @Value("${mafia.checkpoint.interval-minutes:10}")
+    private long intervalMinutes;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "store-checkpoint");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start the periodic checkpoints. Called by StoreRecovery once the store is
+     * rebuilt, so an empty store never replaces a checkpoint.
+     */
+    public void startPeriodic() {
+        if (enabled && intervalMinutes > 0) {
+            scheduler.scheduleWithFixedDelay(this::periodicCheckpoint, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    private void periodicCheckpoint() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // The journal segments are kept until a checkpoint succeeds
+            System.err.println("Periodic checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Final checkpoint on graceful shutdown.
+     */
+    @PreDestroy
+    public void shutdown() throws IOException {
+        scheduler.shutdownNow();
+        checkpoint();
+    }
+
+    /**
+     * Write a checkpoint of every lobby and drop the journal segments it covers.
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long journalFrom = journal.rollForCheckpoint();
+        List<String> lobbyIds = store.getLobbyIds();
+        List<Record> records = new ArrayList<>(lobbyIds.size());
+        for (int from = 0; from < lobbyIds.size(); from += ENCODE_BATCH) {
+            encodeBatch(lobbyIds.subList(from, Math.min(lobbyIds.size(), from + ENCODE_BATCH)), records);
+        }
+        long encoded = System.nanoTime();
+
+        Path path = Path.of(file);
+        write(path, records, journalFrom);
+        journal.deleteSegmentsBefore(journalFrom);
+        System.out.println("Checkpointed " + records.size() + " lobbies to " + path.toAbsolutePath() + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms (encoded in " + (encoded - start) / 1_000_000 + " ms)");
+    }
+
+    // Encode each lobby on its own lane, marked with the journal position at that moment
+    private void encodeBatch(List<String> lobbyIds, List<Record> records) throws IOException {
+        Record[] encoded = new Record[lobbyIds.size()];
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(lobbyIds.size());
+        for (int i = 0; i < encoded.length; i++) {
+            int slot = i;
+            String lobbyId = lobbyIds.get(i);
+            lobbyExecutor.execute(lobbyId, () -> {
+                try {
+                    long position = journal.position();
+                    byte[] lobby = store.encodeLobby(lobbyId);
+                    if (lobby != null) {  // Deleted since it was listed
+                        encoded[slot] = new Record(position, lobby);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted encoding lobbies for a checkpoint", e);
+        }
+        if (failure.get() != null) {
+            throw new IOException("Failed to encode a lobby for a checkpoint", failure.get());
+        }
+        for (Record record : encoded) {
+            if (record != null) {
+                records.add(record);
+            }
+        }
+    }
+
+    /**
+     * Restore the checkpoint, if any, passing each lobby to the sink (from several threads)
+     * with the journal position its events are covered up to.
+     * Returns the first journal segment the checkpoint does not cover (0 without a checkpoint).
+     */
+    public long restore(ObjLongConsumer<Lobby> sink) throws IOException {
+        Path path = Path.of(file);
+        if (!enabled || !Files.exists(path)) {
+            return 0;
+        }
+        return read(path, sink);
+    }
+
+    /**
+     * Write encoded lobbies as a checkpoint file, atomically replacing any previous one.
+     */
+    public static void write(Path path, List<Record> records, long journalFrom) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(journalFrom).putInt(records.size());
+
+            CRC32 crc = new CRC32();
+            for (Record entry : records) {
+                byte[] record = entry.lobby();
+                if (buffer.remaining() < recordHeaderBytes(FORMAT_VERSION) + record.length) {
+                    drain(channel, buffer);
+                }
+                buffer.putInt(record.length).putInt(checksum(crc, FORMAT_VERSION, entry.journalPosition(), record))
+                    .putLong(entry.journalPosition());
+                if (buffer.remaining() < record.length) {
+                    // Larger than the buffer: write it directly
+                    drain(channel, buffer);
+                    writeFully(channel, ByteBuffer.wrap(record));
+                } else {
+                    buffer.put(record);
+                }
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read a checkpoint file, decoding lobbies in parallel and passing each to the
+     * sink with its journal position. Returns the first journal segment the checkpoint
+     * does not cover.
+     */
+    public static long read(Path path, ObjLongConsumer<Lobby> sink) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService decoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "checkpoint-restore");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 20))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int version = in.readInt();
+            if (version > FORMAT_VERSION) {
+                throw new IOException("Checkpoint format " + version + " is newer than supported " + FORMAT_VERSION);
+            }
+            long journalFrom = in.readLong();
+            int count = in.readInt();
+            int recordHeaderBytes = recordHeaderBytes(version);
+            long remaining = channel.size() - HEADER_BYTES;
+            if (count < 0 || count > remaining / recordHeaderBytes) {
+                throw new IOException("Corrupt checkpoint " + path + ": " + count + " records");
+            }
+
+            // Reading is sequential; decoding and indexing run in parallel batches
+            List<Future<?>> pending = new ArrayList<>();
+            AtomicInteger corrupt = new AtomicInteger();
+            List<Record> batch = new ArrayList<>(DECODE_BATCH);
+            List<Integer> checksums = new ArrayList<>(DECODE_BATCH);
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                // Format 1 lobbies were encoded at the roll: none of their events in the journal are covered
+                long position = version >= 2 ? in.readLong() : EventJournal.position(journalFrom, 0);
+                remaining -= recordHeaderBytes;
+                if (length < 0 || length > remaining) {
+                    throw new IOException("Corrupt checkpoint " + path + ": record " + i + " of " + length
+                            + " bytes with " + remaining + " left in the file");
+                }
+                remaining -= length;
+                byte[] record = new byte[length];
+                in.readFully(record);
+                batch.add(new Record(position, record));
+                checksums.add(checksum);
+                if (batch.size() == DECODE_BATCH || i == count - 1) {
+                    List<Record> records = batch;
+                    List<Integer> sums = checksums;
+                    pending.add(decoders.submit(() -> decodeBatch(version, records, sums, sink, corrupt)));
+                    batch = new ArrayList<>(DECODE_BATCH);
+                    checksums = new ArrayList<>(DECODE_BATCH);
+                }
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+            if (corrupt.get() > 0) {
+                throw new IOException("Corrupt checkpoint " + path + ": " + corrupt.get() + " records fail their checksum");
+            }
+            return journalFrom;
+        } catch (EOFException e) {
+            throw new IOException("Truncated checkpoint file: " + path, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to restore checkpoint " + path, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted restoring checkpoint " + path, e);
+        } finally {
+            decoders.shutdown();
+        }
+    }
+
+    private static void decodeBatch(int version, List<Record> records, List<Integer> checksums,
+                                    ObjLongConsumer<Lobby> sink, AtomicInteger corrupt) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            if (checksum(crc, version, record.journalPosition(), record.lobby()) != checksums.get(i)) {
+                corrupt.incrementAndGet();
+                continue;
+            }
+            sink.accept(LobbyCodec.decode(ByteBuffer.wrap(record.lobby())), record.journalPosition());
+        }
+    }
+
+    private static int recordHeaderBytes(int version) {
+        return version >= 2 ? 16 : 8;
+    }
+
+    // Format 2 checksums cover the journal position too
+    private static int checksum(CRC32 crc, int version, long journalPosition, byte[] record) {
+        crc.reset();
+        if (version >= 2) {
+            crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, journalPosition));
+        }
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * One encoded lobby and the journal position its events are covered up to.
+     */
+    public record Record(long journalPosition, byte[] lobby) {}
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rebuilds the InMemoryStore at startup, before the server accepts requests:
+ * the StoreCheckpoint is restored first (in parallel), then the EventJournal
+ * segments written after it are replayed on top. Each checkpointed lobby
+ * comes with the journal position it was encoded at, and its records before
+ * that position are skipped. Replay also skips events the store already
+ * reflects (a lobby or player that exists), so it never duplicates players.
+ * 
+ * An unreadable checkpoint stops the startup: the journal segments it
+ * covers are gone, so it has to be repaired or restored from a backup.
+ * 
+ * WebSocket sessions don't survive a restart, so every restored player starts
+ * disconnected; their tokens stay valid and they reconnect as usual.
+ */
+@Component
+public class StoreRecovery {
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private EventJournal journal;
+
+    @Autowired
+    private StoreCheckpoint checkpoint;
+
+    @Autowired
+    private LobbyReaper lobbyReaper;
+
+    @Value("${mafia.lobby.compact-idle:true}")
+    private boolean compactIdleLobbies;
+
+    @PostConstruct
+    public void recover() throws IOException {
+        long start = System.nanoTime();
+        // No fallback to the journal alone: the segments a checkpoint covers are deleted,
+        // so starting without it would silently lose those lobbies
+        Map<String, Long> covered = new ConcurrentHashMap<>();
+        long journalFrom = checkpoint.restore((lobby, journalPosition) -> {
+            store.restoreLobby(lobby);
+            covered.put(lobby.getId().toUpperCase(), journalPosition);
+            if (compactIdleLobbies) {
+                lobby.compact();
+            }
+        });
+        long restored = System.nanoTime();
+        long events = journal.replay(journalFrom, (position, event) -> {
+            Long checkpointed = covered.get(event.lobbyId().toUpperCase());
+            if (checkpointed == null || position >= checkpointed) {
+                apply(event);
+            }
+        });
+
+        int lobbies = 0;
+        for (Lobby lobby : store.getAllLobbies()) {
+            lobbies++;
+            lobby.drainChangedPlayers();  // Nobody to send deltas to
+            if (compactIdleLobbies) {
+                lobby.compact();  // Nobody is connected yet
+            }
+            lobbyReaper.track(lobby.getId());
+        }
+        if (lobbies > 0) {
+            System.out.println("Recovered " + lobbies + " lobbies: checkpoint in " + (restored - start) / 1_000_000
+                    + " ms, " + events + " journal events in " + (System.nanoTime() - restored) / 1_000_000 + " ms");
+        }
+        if (events > 0) {
+            // Fold the replayed segments into a checkpoint, so crash restarts don't pile them up
+            checkpoint.checkpoint();
+        }
+        checkpoint.startPeriodic();
+    }
+
+    // Events already reflected in the store are skipped, so a replay never duplicates players
+    private void apply(JournalEvent event) {
+        if (event instanceof JournalEvent.LobbyCreated e) {
+            if (store.containsLobby(e.lobbyId())) {
+                return;
+            }
+            Lobby lobby = new Lobby(e.lobbyId(), e.replayCapacity(), e.announcementHistory());
+            lobby.setMaxPlayers(e.maxPlayers());
+            store.saveLobby(lobby);
+            return;
+        }
+        if (event instanceof JournalEvent.LobbyDeleted e) {
+            store.deleteLobby(e.lobbyId());
+            return;
+        }
+
+        Lobby lobby = store.getLobby(event.lobbyId());
+        if (lobby == null) {
+            return;  // Lobby's creation was lost or it was deleted
+        }
+        switch (event) {
+            case JournalEvent.PlayerJoined e -> {
+                if (lobby.getPlayerById(e.playerId()) != null) {
+                    return;
+                }
+                if (lobby.getPlayerCount() >= lobby.getMaxPlayers()) {
+                    System.err.println("Journal: lobby " + lobby.getId() + " is full, skipped join of " + e.playerId());
+                    return;
+                }
+                lobby.addPlayer(new Player(e.playerId(), e.name(), e.playerToken()));
+                store.registerPlayerToken(e.playerToken(), lobby.getId());
+            }
+            case JournalEvent.PlayerRenamed e -> {
+                Player player = lobby.getPlayerById(e.playerId());
+                if (player != null) {
+                    player.setName(e.name());
+                }
+            }
+            case JournalEvent.RoleAssigned e -> {
+                Player player = lobby.getPlayerById(e.playerId());
+                if (player != null) {
+                    lobby.assignRole(player, e.role());
+                }
+            }
+            case JournalEvent.PhaseChanged e -> {
+                lobby.getGameState().setPhase(e.phase());
+                lobby.getGameState().setDayCount(e.dayCount());
+            }
+            case JournalEvent.AnnouncementAdded e -> lobby.getGameState().getAnnouncements().add(e.message());
+            case JournalEvent.PlayerEliminated e -> {
+                Player player = lobby.getPlayerById(e.playerId());
+                if (player != null) {
+                    player.setAlive(false);
+                }
+            }
+            case JournalEvent.LobbyCreated e -> { }
+            case JournalEvent.LobbyDeleted e -> { }
+        }
+        store.saveLobby(lobby);
+    }
+}
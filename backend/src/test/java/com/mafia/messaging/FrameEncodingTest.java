@@ -0,0 +1,54 @@
+package com.mafia.messaging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrameEncodingTest {
+
+    private final FrameEncoding encoding = new FrameEncoding(true, true, 1024, 6);
+
+    @Test
+    void sharedPayloadIsTranscodedOncePerArray() {
+        encoding.negotiate("s1", "cbor", null, Map.of("binaryFrames", true));
+        encoding.negotiate("s2", "cbor", null, Map.of("binaryFrames", true));
+        byte[] frame = "{\"type\":\"PHASE_CHANGE\",\"payload\":{\"phase\":\"NIGHT\"}}".getBytes(StandardCharsets.UTF_8);
+
+        byte[] first = (byte[]) encoding.preSend(message("s1", frame), null).getPayload();
+        byte[] second = (byte[]) encoding.preSend(message("s2", frame), null).getPayload();
+        assertArrayEquals(CborTranscoder.transcode(frame), first);
+        assertEquals(first, second);
+        assertEquals(1, encoding.getStats().getTranscodedFrames());
+
+        // Equal contents in another array is another frame
+        encoding.preSend(message("s1", frame.clone()), null);
+        assertEquals(2, encoding.getStats().getTranscodedFrames());
+        assertEquals(3, encoding.getStats().getRewrittenFrames());
+    }
+
+    @Test
+    void plainSessionsKeepTheJson() {
+        encoding.negotiate("s1", "cbor", null, Map.of("binaryFrames", true));
+        byte[] frame = "{\"type\":\"PHASE_CHANGE\"}".getBytes(StandardCharsets.UTF_8);
+        Message<byte[]> message = message("s2", frame);
+        assertEquals(message, encoding.preSend(message, null));
+        assertEquals(0, encoding.getStats().getTranscodedFrames());
+    }
+
+    private static Message<byte[]> message(String sessionId, byte[] frame) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/lobby/ABC123");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(frame, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,221 @@
+package com.mafia.messaging;
+
+import com.mafia.service.LobbyService;
+import com.mafia.store.InMemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundQueueSessionTest {
+
+    private static final String LOBBY = "/topic/lobby/ABC123";
+    private static final String USER = "/user/queue/private";
+
+    private final InMemoryStore store = mock(InMemoryStore.class);
+    private final LobbyService lobbyService = mock(LobbyService.class);
+    private final WebSocketSession delegate = mock(WebSocketSession.class);
+
+    // The delegate blocks every send until released, like a client that stopped reading
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final Semaphore delivered = new Semaphore(0);
+    private final List<String> sent = new ArrayList<>();
+
+    private OutboundQueue policy;
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        policy.stop();
+    }
+
+    @Test
+    void newerListOrPhaseReplacesTheQueuedOneInOrder() throws Exception {
+        OutboundQueueSession session = session(64, 1024, 30000);
+        blockOn(session, frame(LOBBY, "GAME_SNAPSHOT", "1"));
+
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_UPDATE", "1"));
+        session.sendMessage(frame(LOBBY, "PHASE_CHANGE", "1"));
+        session.sendMessage(frame(USER, "ROLE_ASSIGNED", "1"));
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_UPDATE", "2"));
+        session.sendMessage(frame("/topic/lobby/XYZ789", "PLAYER_LIST_UPDATE", "1"));
+        session.sendMessage(frame(LOBBY, "PHASE_CHANGE", "2"));
+
+        release(4);
+        assertEquals(List.of(
+            LOBBY + " GAME_SNAPSHOT 1",
+            USER + " ROLE_ASSIGNED 1",
+            LOBBY + " PLAYER_LIST_UPDATE 2",
+            "/topic/lobby/XYZ789 PLAYER_LIST_UPDATE 1",
+            LOBBY + " PHASE_CHANGE 2"), sent());
+        assertEquals(2, policy.getStats().getSupersededFrames());
+    }
+
+    @Test
+    void roleAndSnapshotFramesAreNeverDropped() throws Exception {
+        OutboundQueueSession session = session(1, 1024, 30000);
+        blockOn(session, frame(USER, "ROLE_ASSIGNED", "0"));
+
+        // Well past the degrade threshold, all for the same destinations
+        List<String> expected = new ArrayList<>();
+        expected.add(USER + " ROLE_ASSIGNED 0");
+        for (int i = 1; i <= 5; i++) {
+            session.sendMessage(frame(USER, "ROLE_ASSIGNED", padded(i, 400)));
+            session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", padded(i, 400)));
+            expected.add(USER + " ROLE_ASSIGNED " + i);
+            expected.add(LOBBY + " GAME_SNAPSHOT " + i);
+        }
+        assertEquals(1, policy.getStats().getDegradedTotal());
+
+        release(10);
+        assertEquals(expected, sent());
+        assertEquals(0, policy.getStats().getSupersededFrames());
+        verify(delegate, never()).close(any());
+    }
+
+    @Test
+    void deltasAreSkippedOnlyWhileDegradedThenResyncedOnce() throws Exception {
+        when(store.getLobbyIdByWebSocketSession("s1")).thenReturn("ABC123");
+        OutboundQueueSession session = session(1, 1024, 30000);
+        blockOn(session, frame(LOBBY, "PLAYER_LIST_DELTA", "1"));
+
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_DELTA", "2"));
+        session.sendMessage(frame(USER, "ROLE_ASSIGNED", padded(1, 1100)));
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_DELTA", "3"));
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_DELTA", "4"));
+        assertEquals(2, policy.getStats().getDroppedDeltas());
+
+        release(2);
+        verify(lobbyService, timeout(5000)).sendPlayerListToPlayer("ABC123", "s1");
+
+        // Caught up: deltas go out again and nothing else is resynced
+        session.sendMessage(frame(LOBBY, "PLAYER_LIST_DELTA", "5"));
+        assertTrue(delivered.tryAcquire(1, 5, TimeUnit.SECONDS));
+        assertEquals(List.of(
+            LOBBY + " PLAYER_LIST_DELTA 1",
+            LOBBY + " PLAYER_LIST_DELTA 2",
+            USER + " ROLE_ASSIGNED 1",
+            LOBBY + " PLAYER_LIST_DELTA 5"), sent());
+        assertEquals(2, policy.getStats().getDroppedDeltas());
+        assertEquals(1, policy.getStats().getResyncs());
+        verify(lobbyService).sendPlayerListToPlayer("ABC123", "s1");
+    }
+
+    @Test
+    void crossingTheByteLimitClosesTheSessionOnce() throws Exception {
+        OutboundQueueSession session = session(1, 2, 30000);
+        blockOn(session, frame(USER, "ROLE_ASSIGNED", "0"));
+
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", padded(1, 900)));
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", padded(2, 900)));
+        verify(delegate, never()).close(any());
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", padded(3, 900)));
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", padded(4, 900)));
+        session.disconnect();
+
+        verify(delegate, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertClosedOnce(session);
+    }
+
+    @Test
+    void crossingTheMaxDelayClosesTheSessionOnce() throws Exception {
+        OutboundQueueSession session = session(64, 1024, 50);
+        blockOn(session, frame(USER, "ROLE_ASSIGNED", "0"));
+
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", "1"));
+        Thread.sleep(100);
+        verify(delegate, never()).close(any());
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", "2"));
+        session.sendMessage(frame(LOBBY, "GAME_SNAPSHOT", "3"));
+        session.disconnect();
+
+        verify(delegate, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertClosedOnce(session);
+    }
+
+    private OutboundQueueSession session(long degradeKb, long disconnectKb, long maxDelayMillis) throws Exception {
+        policy = new OutboundQueue(true, degradeKb, disconnectKb, maxDelayMillis);
+        ReflectionTestUtils.setField(policy, "store", store);
+        ReflectionTestUtils.setField(policy, "lobbyService", lobbyService);
+        when(delegate.getId()).thenReturn("s1");
+        doAnswer(invocation -> {
+            blocked.countDown();
+            released.await(5, TimeUnit.SECONDS);
+            synchronized (sent) {
+                sent.add(describe(invocation.getArgument(0)));
+            }
+            delivered.release();
+            return null;
+        }).when(delegate).sendMessage(any());
+        return new OutboundQueueSession(delegate, policy);
+    }
+
+    // Send the first frame and wait until the sender is stuck writing it
+    private void blockOn(OutboundQueueSession session, TextMessage first) throws Exception {
+        session.sendMessage(first);
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    }
+
+    // Unblock the client and wait for the first frame plus the given number after it
+    private void release(int frames) throws InterruptedException {
+        released.countDown();
+        assertTrue(delivered.tryAcquire(frames + 1, 5, TimeUnit.SECONDS));
+    }
+
+    private void assertClosedOnce(OutboundQueueSession session) throws Exception {
+        // Whatever was queued behind the blocked write is discarded
+        released.countDown();
+        assertTrue(delivered.tryAcquire(1, 5, TimeUnit.SECONDS));
+        verify(delegate).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, policy.getStats().getDisconnectedTotal());
+        assertEquals(1, sent().size());
+        assertEquals(0, session.getQueuedBytes());
+        assertEquals(0, session.getQueuedFrames());
+    }
+
+    private List<String> sent() {
+        synchronized (sent) {
+            return new ArrayList<>(sent);
+        }
+    }
+
+    private static TextMessage frame(String destination, String type, String version) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\n\n"
+            + "{\"type\":\"" + type + "\",\"payload\":\"" + version + "\"}\u0000");
+    }
+
+    // Version, then filler up to the given payload size
+    private static String padded(int version, int bytes) {
+        return version + " " + "x".repeat(bytes);
+    }
+
+    // "destination type version" of a frame built by frame()
+    private static String describe(Object message) {
+        String payload = ((TextMessage) message).getPayload();
+        String destination = payload.substring(payload.indexOf(':') + 1, payload.indexOf('\n', 8));
+        int typeStart = payload.indexOf("\"type\":\"") + 8;
+        String type = payload.substring(typeStart, payload.indexOf('"', typeStart));
+        int versionStart = payload.indexOf("\"payload\":\"") + 11;
+        String version = payload.substring(versionStart, payload.indexOf('"', versionStart)).split(" ")[0];
+        return destination + " " + type + " " + version;
+    }
+}
@@ -0,0 +1,32 @@
+package com.mafia.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.dto.messages.MessageType;
+import com.mafia.dto.messages.RoleAssignedData;
+import com.mafia.dto.messages.WebSocketMessage;
+import com.mafia.model.enums.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RoleAssignedTemplateTest {
+
+    // Configured like the application's ObjectMapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void matchesJacksonForEveryRole() throws Exception {
+        List<UUID> ids = List.of(UUID.randomUUID(), new UUID(0, 0), new UUID(-1, -1));
+        for (UUID id : ids) {
+            for (Role role : Role.values()) {
+                RoleAssignedData data = new RoleAssignedData(id, role, "You have been assigned the role: " + role);
+                byte[] expected = objectMapper.writeValueAsBytes(WebSocketMessage.of(MessageType.ROLE_ASSIGNED, data));
+                assertArrayEquals(expected, RoleAssignedTemplate.render(id, role), id + "/" + role);
+            }
+        }
+    }
+}
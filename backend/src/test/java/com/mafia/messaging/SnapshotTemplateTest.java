@@ -0,0 +1,63 @@
+package com.mafia.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.dto.messages.GameSnapshotData;
+import com.mafia.dto.messages.MessageType;
+import com.mafia.dto.messages.WebSocketMessage;
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class SnapshotTemplateTest {
+
+    // Configured like the application's ObjectMapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Test
+    void matchesJacksonForEveryRoleAndAliveFlag() throws Exception {
+        GameSnapshotData.Shared shared = shared(List.of(
+            new GameSnapshotData.PlayerSnapshot(UUID.randomUUID(), "Zoë \"Z\" \\ O'Brien", true, true, true),
+            new GameSnapshotData.PlayerSnapshot(UUID.randomUUID(), "tab\there\nline\u0001\u001f", false, false, false),
+            new GameSnapshotData.PlayerSnapshot(UUID.randomUUID(), "日本語 😀  </script>", true, false, false)),
+            List.of("Night falls on \"the town\"", "Ünïcödé\r\n", ""));
+        byte[] sharedJson = objectMapper.writeValueAsBytes(shared);
+
+        List<Role> roles = new ArrayList<>(Arrays.asList(Role.values()));
+        roles.add(null);
+        for (Role role : roles) {
+            for (boolean alive : new boolean[] {true, false}) {
+                byte[] expected = objectMapper.writeValueAsBytes(
+                    WebSocketMessage.of(MessageType.GAME_SNAPSHOT, new GameSnapshotData(role, alive, shared)));
+                assertArrayEquals(expected, SnapshotTemplate.render(sharedJson, role, alive), role + "/" + alive);
+            }
+        }
+    }
+
+    @Test
+    void matchesJacksonForAnEmptyLobby() throws Exception {
+        GameSnapshotData.Shared shared = shared(List.of(), List.of());
+        byte[] expected = objectMapper.writeValueAsBytes(
+            WebSocketMessage.of(MessageType.GAME_SNAPSHOT, new GameSnapshotData(Role.GOD, true, shared)));
+        assertArrayEquals(expected, SnapshotTemplate.render(objectMapper.writeValueAsBytes(shared), Role.GOD, true));
+    }
+
+    private static GameSnapshotData.Shared shared(List<GameSnapshotData.PlayerSnapshot> players, List<String> announcements) {
+        return GameSnapshotData.Shared.builder()
+            .lobbyId("ABC123")
+            .currentPhase(GamePhase.NIGHT)
+            .dayCount(3)
+            .players(players)
+            .playerListSequence(42)
+            .announcements(announcements)
+            .announcementsStart(7)
+            .build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.mafia.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventRingTest {
+
+    @Test
+    void growsOnlyAsFarAsTheFramesHeld() throws Exception {
+        EventRing ring = new EventRing(256);
+        ring.append(null, new byte[] {1});
+        assertEquals(1, heldSlots(ring));
+        ring.append(null, new byte[] {2});
+        ring.append(null, new byte[] {3});
+        assertEquals(4, heldSlots(ring));
+    }
+
+    @Test
+    void replaysPlayerAndBroadcastFramesAcrossTheWrap() {
+        UUID ann = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        EventRing ring = new EventRing(4);
+        long first = ring.append(null, new byte[] {0});
+        for (int i = 1; i < 10; i++) {
+            ring.append(i % 3 == 0 ? bob : null, new byte[] {(byte) i});
+        }
+        assertEquals(first + 9, ring.getLastSeq());
+        assertFalse(ring.canReplay(first + 4));  // Frame first + 5 was overwritten
+
+        List<Byte> replayed = new ArrayList<>();
+        assertTrue(ring.replay(first + 5, ann, (seq, frame) -> replayed.add(frame[0])));
+        assertEquals(List.of((byte) 7, (byte) 8), replayed);
+    }
+
+    @Test
+    void appendAllMatchesSingleAppends() throws Exception {
+        UUID ann = UUID.randomUUID();
+        UUID bob = UUID.randomUUID();
+        EventRing single = new EventRing(8);
+        EventRing bulk = new EventRing(8);
+        single.append(null, new byte[] {0});
+        bulk.append(null, new byte[] {0});
+        UUID[] recipients = new UUID[10];
+        byte[][] frames = new byte[10][];
+        for (int i = 0; i < 10; i++) {
+            recipients[i] = i % 2 == 0 ? ann : bob;
+            frames[i] = new byte[] {(byte) (i + 1)};
+            single.append(recipients[i], frames[i]);
+        }
+        assertEquals(bulk.getLastSeq() + 1, bulk.appendAll(recipients, frames));
+        assertEquals(8, heldSlots(bulk));
+
+        long after = bulk.getLastSeq() - 8;
+        List<Byte> fromSingle = new ArrayList<>();
+        List<Byte> fromBulk = new ArrayList<>();
+        assertTrue(single.replay(single.getLastSeq() - 8, ann, (seq, frame) -> fromSingle.add(frame[0])));
+        assertTrue(bulk.replay(after, ann, (seq, frame) -> fromBulk.add(frame[0])));
+        assertEquals(List.of((byte) 3, (byte) 5, (byte) 7, (byte) 9), fromBulk);
+        assertEquals(fromSingle, fromBulk);
+        assertFalse(bulk.canReplay(after - 1));
+    }
+
+    private static int heldSlots(EventRing ring) throws Exception {
+        Field frames = EventRing.class.getDeclaredField("frames");
+        frames.setAccessible(true);
+        return ((byte[][]) frames.get(ring)).length;
+    }
+}
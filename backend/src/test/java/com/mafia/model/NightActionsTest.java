@@ -0,0 +1,63 @@
+package com.mafia.model;
+
+import com.mafia.model.enums.NightActionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NightActionsTest {
+    private static final UUID ANN = UUID.randomUUID();
+    private static final UUID BOB = UUID.randomUUID();
+    private static final UUID TARGET = UUID.randomUUID();
+
+    @Test
+    void actionsFromAnEarlierEpochAreDropped() {
+        NightActions actions = new NightActions(4);
+        actions.submit(0, ANN, NightActionType.KILL, TARGET);
+        actions.advance();
+        actions.submit(1, BOB, NightActionType.SAVE, TARGET);
+
+        List<NightActions.Action> drained = actions.drain();
+        assertEquals(1, drained.size());
+        assertEquals(BOB, drained.get(0).actorId());
+        assertTrue(actions.drain().isEmpty());  // Drained slots are cleared
+    }
+
+    @Test
+    void laterSubmissionReplacesTheEarlierAndDrainIsInSeatOrder() {
+        NightActions actions = new NightActions(4);
+        actions.submit(3, BOB, NightActionType.KILL, ANN);
+        actions.submit(1, ANN, NightActionType.KILL, BOB);
+        actions.submit(1, ANN, NightActionType.KILL, TARGET);
+
+        List<NightActions.Action> drained = actions.drain();
+        assertEquals(List.of(1, 3), drained.stream().map(NightActions.Action::seat).toList());
+        assertEquals(TARGET, drained.get(0).targetId());
+    }
+
+    @Test
+    void seatsOutsideTheLobbyAreRejected() {
+        NightActions actions = new NightActions(2);
+        assertFalse(actions.submit(-1, ANN, NightActionType.KILL, TARGET));
+        assertFalse(actions.submit(2, ANN, NightActionType.KILL, TARGET));
+        assertTrue(actions.drain().isEmpty());
+    }
+
+    @Test
+    void seatsFollowJoinOrderAcrossCompaction() {
+        Lobby lobby = new Lobby("ABC123");
+        for (int i = 0; i < 3; i++) {
+            lobby.addPlayer(new Player(UUID.randomUUID(), "P" + i, "token-" + i));
+        }
+        lobby.compact();
+        List<Player> players = lobby.getPlayers();
+        for (int seat = 0; seat < players.size(); seat++) {
+            assertEquals(seat, players.get(seat).getSession().getSeat());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.mafia.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mafia.messaging.MessageDispatcher;
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.NightActionType;
+import com.mafia.model.enums.Role;
+import com.mafia.store.EventJournal;
+import com.mafia.store.InMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GameServiceTest {
+    private static final String LOBBY = "ABC123";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InMemoryStore store = mock(InMemoryStore.class);
+    private final MessageDispatcher dispatcher = mock(MessageDispatcher.class);
+    private final LobbyService lobbyService = mock(LobbyService.class);
+    private final LobbyExecutor lanes = new LobbyExecutor(1);
+    private final GameService service = new GameService();
+
+    private Lobby lobby;
+    private Player god, mafia1, mafia2, doctor, detective, villager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        GameMetrics metrics = new GameMetrics();
+        ReflectionTestUtils.setField(metrics, "registry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "store", store);
+        ReflectionTestUtils.setField(service, "lobbyService", lobbyService);
+        ReflectionTestUtils.setField(service, "lobbyExecutor", lanes);
+        ReflectionTestUtils.setField(service, "messageDispatcher", dispatcher);
+        ReflectionTestUtils.setField(service, "journal", mock(EventJournal.class));
+        ReflectionTestUtils.setField(service, "metrics", metrics);
+        when(dispatcher.encode(any())).thenAnswer(call -> objectMapper.writeValueAsBytes(call.getArgument(0)));
+
+        lobby = new Lobby(LOBBY);
+        god = join(Role.GOD);
+        mafia1 = join(Role.MAFIA);
+        mafia2 = join(Role.MAFIA);
+        doctor = join(Role.DOCTOR);
+        detective = join(Role.DETECTIVE);
+        villager = join(Role.VILLAGER);
+        lobby.getGameState().setPhase(GamePhase.DAY);
+        when(store.getLobby(LOBBY)).thenReturn(lobby);
+        when(store.peekLobby(LOBBY)).thenReturn(lobby);
+        when(store.getLobbyIdByWebSocketSession(anyString())).thenReturn(LOBBY);
+        service.nextPhase(LOBBY, null);  // Day -> night
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+    @Test
+    void tiedKillGoesToTheTargetVotedForFirstInSeatOrder() throws Exception {
+        submit(mafia2, NightActionType.KILL, villager);
+        submit(mafia1, NightActionType.KILL, detective);
+
+        Map<UUID, JsonNode> results = resolve();
+        assertFalse(detective.isAlive());
+        assertTrue(villager.isAlive());
+        assertEquals("KILLED", results.get(mafia1.getId()).get("outcome").asText());
+        assertEquals(detective.getId().toString(), results.get(mafia2.getId()).get("targetId").asText());
+        verify(dispatcher, times(2)).broadcast(eq(lobby), any());  // Elimination and phase change
+        verify(lobbyService).requestPlayerListUpdate(LOBBY);
+    }
+
+    @Test
+    void actionsOfTheWrongRoleAreIgnored() throws Exception {
+        submit(doctor, NightActionType.KILL, villager);
+        submit(god, NightActionType.KILL, villager);
+        submit(villager, NightActionType.INVESTIGATE, mafia1);
+
+        assertTrue(resolve().isEmpty());
+        assertTrue(villager.isAlive());
+    }
+
+    @Test
+    void doctorSavePreventsTheKill() throws Exception {
+        submit(mafia1, NightActionType.KILL, villager);
+        submit(doctor, NightActionType.SAVE, villager);
+
+        Map<UUID, JsonNode> results = resolve();
+        assertTrue(villager.isAlive());
+        assertEquals("SAVED", results.get(mafia1.getId()).get("outcome").asText());
+        assertEquals("SAVED", results.get(doctor.getId()).get("outcome").asText());
+        verify(lobbyService, never()).requestPlayerListUpdate(LOBBY);
+    }
+
+    @Test
+    void saveOfAnotherPlayerReportsNoAttack() throws Exception {
+        submit(mafia1, NightActionType.KILL, villager);
+        submit(doctor, NightActionType.SAVE, detective);
+
+        Map<UUID, JsonNode> results = resolve();
+        assertFalse(villager.isAlive());
+        assertEquals("NO_ATTACK", results.get(doctor.getId()).get("outcome").asText());
+    }
+
+    @Test
+    void detectiveLearnsWhetherTheTargetIsMafia() throws Exception {
+        submit(detective, NightActionType.INVESTIGATE, mafia2);
+        assertEquals("MAFIA", resolve().get(detective.getId()).get("outcome").asText());
+
+        service.nextPhase(LOBBY, null);  // Day -> night
+        submit(detective, NightActionType.INVESTIGATE, villager);
+        assertEquals("NOT_MAFIA", resolve().get(detective.getId()).get("outcome").asText());
+    }
+
+    @Test
+    void actionsByDeadActorsOrAgainstDeadOrGodTargetsAreIgnored() throws Exception {
+        mafia2.setAlive(false);
+        doctor.setAlive(false);
+        submit(mafia2, NightActionType.KILL, villager);
+        submit(doctor, NightActionType.SAVE, mafia1);
+        submit(mafia1, NightActionType.KILL, god);
+        submit(detective, NightActionType.INVESTIGATE, doctor);
+
+        assertTrue(resolve().isEmpty());
+        assertTrue(villager.isAlive());
+        assertTrue(god.isAlive());
+        verify(dispatcher, times(1)).broadcast(eq(lobby), any());  // Phase change only
+    }
+
+    @Test
+    void actionsSentBeforeTheNightAreIgnored() throws Exception {
+        service.nextPhase(LOBBY, null);  // Night -> day
+        submit(mafia1, NightActionType.KILL, villager);
+        service.nextPhase(LOBBY, null);  // Day -> night
+
+        assertTrue(resolve().isEmpty());
+        assertTrue(villager.isAlive());
+    }
+
+    @Test
+    void actionsFromAnotherLobbysSessionAreRejected() {
+        when(store.getLobbyIdByWebSocketSession("ws-" + mafia1.getId())).thenReturn("XYZ789");
+        assertFalse(submit(mafia1, NightActionType.KILL, villager));
+    }
+
+    private Player join(Role role) {
+        Player player = new Player(UUID.randomUUID(), role.name(), "token-" + role + "-" + lobby.getPlayerCount());
+        lobby.addPlayer(player);
+        lobby.assignRole(player, role);
+        lobby.attachSession(player, "ws-" + player.getId());
+        return player;
+    }
+
+    private boolean submit(Player actor, NightActionType type, Player target) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("playerId", actor.getId());
+        attributes.put("seat", actor.getSession().getSeat());
+        return service.submitNightAction(LOBBY, "ws-" + actor.getId(), attributes, type, target.getId());
+    }
+
+    // End the night and return the NIGHT_ACTION_RESULT payloads by recipient
+    @SuppressWarnings("unchecked")
+    private Map<UUID, JsonNode> resolve() throws Exception {
+        ArgumentCaptor<List<MessageDispatcher.PlayerFrame>> sent = ArgumentCaptor.forClass(List.class);
+        clearInvocations(dispatcher);
+        service.nextPhase(LOBBY, null);
+        verify(dispatcher).sendEvents(eq(lobby), sent.capture());
+        Map<UUID, JsonNode> results = new HashMap<>();
+        for (MessageDispatcher.PlayerFrame frame : sent.getValue()) {
+            JsonNode message = objectMapper.readTree(frame.frame());
+            assertEquals("NIGHT_ACTION_RESULT", message.get("type").asText());
+            results.put(frame.playerId(), message.get("data"));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,75 @@
+package com.mafia.service;
+
+import com.mafia.dto.LobbyResponse;
+import com.mafia.messaging.BroadcastCoalescer;
+import com.mafia.messaging.MessageDispatcher;
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.store.EventJournal;
+import com.mafia.store.InMemoryStore;
+import com.mafia.store.LobbyReaper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class LobbyServiceTest {
+
+    private final InMemoryStore store = new InMemoryStore();
+    private final LobbyExecutor lanes = new LobbyExecutor(2);
+    private final LobbyService service = new LobbyService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "store", store);
+        ReflectionTestUtils.setField(service, "lobbyExecutor", lanes);
+        ReflectionTestUtils.setField(service, "messageDispatcher", mock(MessageDispatcher.class));
+        ReflectionTestUtils.setField(service, "broadcastCoalescer", mock(BroadcastCoalescer.class));
+        ReflectionTestUtils.setField(service, "journal", mock(EventJournal.class));
+        ReflectionTestUtils.setField(service, "lobbyReaper", mock(LobbyReaper.class));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        lanes.shutdown();
+    }
+
+    @Test
+    void tokenOfAnotherLobbyJoinsAsANewPlayerWithoutTouchingThatLobby() {
+        Lobby other = lobby("OTHER1", "token-other");
+        other.compact();
+        lobby("LOBBY1", "token-1");
+
+        LobbyResponse response = service.joinLobby("LOBBY1", "Bob", "token-other");
+        assertNotEquals("token-other", response.getPlayerToken());
+        assertEquals(2, store.getLobby("LOBBY1").getPlayerCount());
+        assertTrue(other.isCompact());
+    }
+
+    @Test
+    void tokenOfTheLobbyRejoinsAsTheSamePlayer() {
+        Lobby lobby = lobby("LOBBY1", "token-1");
+        UUID playerId = lobby.getPlayerByToken("token-1").getId();
+
+        LobbyResponse response = service.joinLobby("lobby1", "Ann", "token-1");
+        assertEquals(playerId, response.getPlayerId());
+        assertEquals("token-1", response.getPlayerToken());
+        assertEquals(1, lobby.getPlayerCount());
+        assertEquals("Ann", lobby.getPlayerById(playerId).getName());
+    }
+
+    private Lobby lobby(String lobbyId, String token) {
+        Lobby lobby = new Lobby(lobbyId);
+        lobby.addPlayer(new Player(UUID.randomUUID(), "P", token));
+        store.saveLobby(lobby);
+        store.registerPlayerToken(token, lobbyId);
+        return lobby;
+    }
+}
@@ -0,0 +1,150 @@
+package com.mafia.store;
+
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventJournalTest {
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @TempDir
+    Path dir;
+
+    private final List<JournalEvent> events = List.of(
+        new JournalEvent.LobbyCreated("ABC123", 20, 256, 500),
+        new JournalEvent.PlayerJoined("ABC123", PLAYER, "token-1", "Zoë \"Z\""),
+        new JournalEvent.RoleAssigned("ABC123", PLAYER, Role.DOCTOR),
+        new JournalEvent.RoleAssigned("ABC123", PLAYER, null),
+        new JournalEvent.PlayerRenamed("ABC123", PLAYER, "Zed"),
+        new JournalEvent.PhaseChanged("ABC123", GamePhase.NIGHT, 1),
+        new JournalEvent.AnnouncementAdded("ABC123", "Night falls"),
+        new JournalEvent.PlayerEliminated("ABC123", PLAYER),
+        new JournalEvent.LobbyDeleted("ABC123"));
+
+    @Test
+    void replaysEveryEventInOrder() throws IOException {
+        write(events);
+        assertEquals(events, replay(0));
+    }
+
+    @Test
+    void replayStartsAtTheGivenSegment() throws IOException {
+        EventJournal journal = open();
+        journal.append(events.get(0));
+        long next = journal.rollForCheckpoint();
+        journal.append(events.get(1));
+        journal.close();
+
+        assertEquals(events.subList(0, 2), replay(0));
+        assertEquals(events.subList(1, 2), replay(next));
+    }
+
+    @Test
+    void tornLengthEndsReplayOfTheSegment() throws IOException {
+        write(events);
+        Path segment = onlySegment();
+        int third = recordOffset(segment, 2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), third);
+        }
+        assertEquals(events.subList(0, 2), replay(0));
+    }
+
+    @Test
+    void checksumMismatchEndsReplayOfTheSegment() throws IOException {
+        write(events);
+        Path segment = onlySegment();
+        int third = recordOffset(segment, 2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, third + 12);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) (b.get(0) ^ 0x55)}), third + 12);
+        }
+        assertEquals(events.subList(0, 2), replay(0));
+    }
+
+    @Test
+    void retiredConnectionRecordsAreSkipped() throws IOException {
+        write(events.subList(0, 2));
+        // An old PLAYER_CONNECTED record (type 4), as journaled before connection state was dropped
+        Path segment = onlySegment();
+        int end = recordOffset(segment, 2);
+        ByteBuffer body = ByteBuffer.allocate(1 + 4 + 6 + 16).put((byte) 4).putInt(6)
+            .put("ABC123".getBytes(StandardCharsets.UTF_8))
+            .putLong(PLAYER.getMostSignificantBits()).putLong(PLAYER.getLeastSignificantBits()).flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(8 + body.remaining())
+            .putInt(body.remaining()).putInt((int) crc.getValue()).put(body).flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(record, end);
+        }
+
+        EventJournal journal = open();
+        journal.append(events.get(2));
+        journal.close();
+        assertEquals(events.subList(0, 3), replay(0));
+    }
+
+    @Test
+    void everyStartWritesANewSegment() throws IOException {
+        write(events.subList(0, 1));
+        write(events.subList(1, 2));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+        assertEquals(events.subList(0, 2), replay(0));
+    }
+
+    private EventJournal open() throws IOException {
+        EventJournal journal = new EventJournal(true, dir.toString(), 1, 10);
+        journal.open();
+        return journal;
+    }
+
+    private void write(List<JournalEvent> toWrite) throws IOException {
+        EventJournal journal = open();
+        toWrite.forEach(journal::append);
+        journal.close();
+    }
+
+    private List<JournalEvent> replay(long fromSegment) throws IOException {
+        List<JournalEvent> replayed = new ArrayList<>();
+        EventJournal journal = open();
+        journal.replay(fromSegment, (position, event) -> replayed.add(event));
+        journal.close();
+        return replayed;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("segment-")).findFirst().orElseThrow();
+        }
+    }
+
+    // Byte offset of the index-th record (or of the end marker after the last one)
+    private static int recordOffset(Path segment, int index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int offset = 8;
+        for (int i = 0; i < index; i++) {
+            offset += 8 + buffer.getInt(offset);
+        }
+        return offset;
+    }
+}
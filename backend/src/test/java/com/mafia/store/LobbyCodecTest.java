@@ -0,0 +1,106 @@
+package com.mafia.store;
+
+import com.mafia.model.AnnouncementLog;
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.model.enums.GamePhase;
+import com.mafia.model.enums.Role;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LobbyCodecTest {
+
+    @Test
+    void roundTripsPlayersRolesAndGameState() {
+        Lobby lobby = lobby();
+        Lobby decoded = LobbyCodec.decode(ByteBuffer.wrap(LobbyCodec.encode(lobby)));
+        assertSameLobby(lobby, decoded);
+        assertFalse(decoded.isCompact());
+        assertTrue(decoded.drainChangedPlayers().isEmpty());
+    }
+
+    @Test
+    void compactedLobbyEncodesLikeTheInflatedOne() {
+        Lobby lobby = lobby();
+        byte[] inflated = LobbyCodec.encode(lobby);
+        lobby.compact();
+        byte[] compacted = LobbyCodec.encode(lobby);
+        assertTrue(lobby.isCompact());  // Encoding doesn't inflate it
+        assertArrayEquals(inflated, compacted);
+        assertSameLobby(lobby(), LobbyCodec.decode(ByteBuffer.wrap(compacted)));
+    }
+
+    @Test
+    void trailingFieldsFromNewerVersionsAreSkipped() {
+        Lobby lobby = lobby();
+        byte[] encoded = LobbyCodec.encode(lobby);
+        byte[] newer = Arrays.copyOf(encoded, encoded.length + 12);
+        assertSameLobby(lobby, LobbyCodec.decode(ByteBuffer.wrap(newer)));
+    }
+
+    private static void assertSameLobby(Lobby expected, Lobby actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getMaxPlayers(), actual.getMaxPlayers());
+        assertEquals(expected.getEventRing().getCapacity(), actual.getEventRing().getCapacity());
+        assertEquals(expected.getGameState().getPhase(), actual.getGameState().getPhase());
+        assertEquals(expected.getGameState().getDayCount(), actual.getGameState().getDayCount());
+        AnnouncementLog announcements = expected.getGameState().getAnnouncements();
+        AnnouncementLog decodedAnnouncements = actual.getGameState().getAnnouncements();
+        assertEquals(announcements.getCapacity(), decodedAnnouncements.getCapacity());
+        assertEquals(announcements.getTotal(), decodedAnnouncements.getTotal());
+        assertEquals(announcements.getFirstIndex(), decodedAnnouncements.getFirstIndex());
+        assertEquals(announcements.range(announcements.getFirstIndex(), announcements.getTotal()),
+            decodedAnnouncements.range(decodedAnnouncements.getFirstIndex(), decodedAnnouncements.getTotal()));
+
+        List<Player> players = expected.getPlayers();
+        List<Player> decoded = actual.getPlayers();
+        assertEquals(players.size(), decoded.size());
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            Player copy = decoded.get(i);
+            assertEquals(player.getId(), copy.getId());
+            assertEquals(player.getName(), copy.getName());
+            assertEquals(player.getSession().getPlayerToken(), copy.getSession().getPlayerToken());
+            assertEquals(player.getRole(), copy.getRole());
+            assertEquals(player.isAlive(), copy.isAlive());
+            assertEquals(i, copy.getSession().getSeat());
+            assertFalse(copy.getSession().isConnected());
+            assertEquals(copy, actual.getPlayerByToken(player.getSession().getPlayerToken()));
+        }
+        assertEquals(players.get(0).getId(), actual.getGod().getId());
+    }
+
+    // Same contents on every call, so a decoded lobby can be compared with a fresh one
+    private static Lobby lobby() {
+        Lobby lobby = new Lobby("ABC123", 64, 3);
+        lobby.setMaxPlayers(8);
+        String[] names = {"God", "Zoë \"Z\"", "日本語 😀", "Bob"};
+        Role[] roles = {Role.GOD, Role.MAFIA, Role.DOCTOR, null};
+        for (int i = 0; i < names.length; i++) {
+            Player player = new Player(new UUID(7, i), names[i], i == 3 ? "not-a-uuid" : new UUID(9, i).toString());
+            lobby.addPlayer(player);
+            if (roles[i] != null) {
+                lobby.assignRole(player, roles[i]);
+            }
+        }
+        lobby.getPlayers().get(2).setAlive(false);
+        lobby.attachSession(lobby.getPlayers().get(1), "ws-1");
+        lobby.getGameState().setPhase(GamePhase.NIGHT);
+        lobby.getGameState().setDayCount(4);
+        for (int i = 0; i < 5; i++) {
+            lobby.getGameState().addAnnouncement("Announcement " + i);
+        }
+        assertNull(lobby.getPlayers().get(3).getRole());
+        return lobby;
+    }
+}
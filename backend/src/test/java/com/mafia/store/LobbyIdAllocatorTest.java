@@ -0,0 +1,78 @@
+package com.mafia.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LobbyIdAllocatorTest {
+    private static final long SPACE = 36 * 36 * 36;
+
+    @Test
+    void everyIdIsHandedOutOnceAcrossTheWholeSpace() {
+        LobbyIdAllocator allocator = new LobbyIdAllocator(SPACE);
+        Set<String> ids = allocateAll(allocator);
+        assertEquals(SPACE, ids.size());
+        for (String id : ids) {
+            assertTrue(id.matches("AAA[A-Z0-9]{3}"), id);
+        }
+        assertThrows(IllegalStateException.class, () -> allocator.allocate(id -> true));
+    }
+
+    @Test
+    void releasedIdsComeBackOnlyAfterTheRestOfTheSpace() {
+        LobbyIdAllocator allocator = new LobbyIdAllocator(SPACE);
+        String first = allocator.allocate(id -> true);
+        allocator.release(first);
+        Set<String> rest = new HashSet<>();
+        for (int i = 1; i < SPACE; i++) {
+            rest.add(allocator.allocate(id -> true));
+        }
+        assertFalse(rest.contains(first));
+        assertEquals(SPACE - 1, rest.size());
+        assertEquals(first, allocator.allocate(id -> true));  // Second cycle
+    }
+
+    @Test
+    void secondCycleSkipsIdsStillInUse() {
+        LobbyIdAllocator allocator = new LobbyIdAllocator(SPACE);
+        Set<String> ids = allocateAll(allocator);
+        Set<String> released = new HashSet<>();
+        for (String id : ids) {
+            if (released.size() < SPACE / 2) {
+                allocator.release(id);
+                released.add(id);
+            }
+        }
+        assertEquals(released, allocateAll(allocator));
+        assertThrows(IllegalStateException.class, () -> allocator.allocate(id -> true));
+    }
+
+    @Test
+    void reservedAndRejectedIdsAreSkipped() {
+        LobbyIdAllocator allocator = new LobbyIdAllocator(SPACE);
+        allocator.reserve("AAAAAA");
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < SPACE / 2; i++) {
+            String id = allocator.allocate(candidate -> candidate.charAt(5) != 'B');
+            assertTrue(ids.add(id));
+            assertFalse(id.equals("AAAAAA") || id.charAt(5) == 'B', id);
+        }
+    }
+
+    private static Set<String> allocateAll(LobbyIdAllocator allocator) {
+        Set<String> ids = new HashSet<>();
+        while (true) {
+            try {
+                assertTrue(ids.add(allocator.allocate(id -> true)));
+            } catch (IllegalStateException e) {
+                return ids;
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.model.Player;
+import com.mafia.service.LobbyExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StoreCheckpointTest {
+    private static final int LOBBIES = 8;
+    private static final int JOINS_PER_LOBBY = 400;
+
+    @TempDir
+    Path dir;
+
+    private final List<EventJournal> journals = new ArrayList<>();
+    private final List<LobbyExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void close() throws InterruptedException {
+        for (EventJournal journal : journals) {
+            journal.close();
+        }
+        for (LobbyExecutor executor : executors) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void eventsAppendedDuringACheckpointAreRestoredExactlyOnce() throws Exception {
+        InMemoryStore store = new InMemoryStore();
+        EventJournal journal = journal();
+        LobbyExecutor lanes = executor();
+        StoreCheckpoint checkpoint = checkpoint(store, journal, lanes);
+
+        List<String> lobbyIds = new ArrayList<>();
+        for (int i = 0; i < LOBBIES; i++) {
+            String lobbyId = "LOBBY" + i;
+            lobbyIds.add(lobbyId);
+            lanes.run(lobbyId, () -> {
+                Lobby lobby = new Lobby(lobbyId);
+                lobby.setMaxPlayers(JOINS_PER_LOBBY);
+                store.saveLobby(lobby);
+                journal.append(new JournalEvent.LobbyCreated(lobbyId, JOINS_PER_LOBBY, 16, 16));
+            });
+        }
+
+        // Players keep joining on the lanes while checkpoints are taken
+        Set<UUID> joined = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(LOBBIES);
+        ExecutorService writers = Executors.newFixedThreadPool(LOBBIES);
+        List<Future<?>> done = new ArrayList<>();
+        for (String lobbyId : lobbyIds) {
+            done.add(writers.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < JOINS_PER_LOBBY; i++) {
+                    UUID playerId = UUID.randomUUID();
+                    lanes.run(lobbyId, () -> {
+                        Lobby lobby = store.getLobby(lobbyId);
+                        String token = UUID.randomUUID().toString();
+                        lobby.addPlayer(new Player(playerId, "p", token));
+                        store.saveLobby(lobby);
+                        store.registerPlayerToken(token, lobbyId);
+                        journal.append(new JournalEvent.PlayerJoined(lobbyId, playerId, token, "p"));
+                        // Not idempotent on replay: counts any event restored twice
+                        lobby.getGameState().addAnnouncement("joined");
+                        journal.append(new JournalEvent.AnnouncementAdded(lobbyId, "joined"));
+                    });
+                    joined.add(playerId);
+                }
+            }));
+        }
+        started.await();
+        for (int i = 0; i < 5; i++) {
+            checkpoint.checkpoint();
+        }
+        for (Future<?> future : done) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        writers.shutdown();
+        journal.close();
+
+        InMemoryStore restored = recover();
+        Set<UUID> players = new HashSet<>();
+        for (String lobbyId : lobbyIds) {
+            Lobby lobby = restored.getLobby(lobbyId);
+            assertEquals(JOINS_PER_LOBBY, lobby.getPlayerCount(), lobbyId);
+            assertEquals(JOINS_PER_LOBBY, lobby.getGameState().getAnnouncements().getTotal(), lobbyId);
+            for (Player player : lobby.getPlayers()) {
+                players.add(player.getId());
+            }
+        }
+        assertEquals(joined, players);
+    }
+
+    @Test
+    void checkpointCoversSpilledLobbies() throws Exception {
+        InMemoryStore store = new InMemoryStore();
+        EventJournal journal = journal();
+        LobbyExecutor lanes = executor();
+        StoreCheckpoint checkpoint = checkpoint(store, journal, lanes);
+
+        lanes.run("SPILL1", () -> {
+            Lobby lobby = new Lobby("SPILL1");
+            lobby.addPlayer(new Player(UUID.randomUUID(), "Ann", UUID.randomUUID().toString()));
+            store.saveLobby(lobby);
+            journal.append(new JournalEvent.LobbyCreated("SPILL1", 20, 16, 16));
+            assertTrue(store.spill(lobby));
+        });
+        checkpoint.checkpoint();
+        journal.close();
+
+        Lobby lobby = recover().getLobby("SPILL1");
+        assertEquals(1, lobby.getPlayerCount());
+        assertEquals("Ann", lobby.getPlayers().get(0).getName());
+    }
+
+    @Test
+    void truncatedCheckpointFailsToRestore() throws IOException {
+        Path file = dir.resolve("truncated.bin");
+        StoreCheckpoint.write(file, List.of(record(new Lobby("ABCDEF"))), 3);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 5));
+
+        assertThrows(IOException.class, () -> StoreCheckpoint.read(file, (lobby, position) -> { }));
+    }
+
+    @Test
+    void corruptRecordLengthFailsToRestore() throws IOException {
+        Path file = dir.resolve("corrupt.bin");
+        StoreCheckpoint.write(file, List.of(record(new Lobby("ABCDEF"))), 3);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(20, Integer.MAX_VALUE);  // First record's length
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> StoreCheckpoint.read(file, (lobby, position) -> { }));
+
+        ByteBuffer.wrap(bytes).putInt(20, -7);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> StoreCheckpoint.read(file, (lobby, position) -> { }));
+    }
+
+    @Test
+    void format1CheckpointCoversNothingPastItsSegment() throws IOException {
+        Path file = dir.resolve("v1.bin");
+        byte[] lobby = LobbyCodec.encode(new Lobby("ABCDEF"));
+        CRC32 crc = new CRC32();
+        crc.update(lobby);
+        ByteBuffer bytes = ByteBuffer.allocate(20 + 8 + lobby.length);
+        bytes.putInt(0x4D434B50).putInt(1).putLong(3).putInt(1);
+        bytes.putInt(lobby.length).putInt((int) crc.getValue()).put(lobby);
+        Files.write(file, bytes.array());
+
+        List<Long> positions = new ArrayList<>();
+        assertEquals(3, StoreCheckpoint.read(file, (restored, position) -> positions.add(position)));
+        assertEquals(List.of(EventJournal.position(3, 0)), positions);
+    }
+
+    @Test
+    void corruptJournalPositionFailsToRestore() throws IOException {
+        Path file = dir.resolve("position.bin");
+        StoreCheckpoint.write(file, List.of(record(new Lobby("ABCDEF"))), 3);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[28 + 7] ^= 1;  // Low byte of the first record's position
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> StoreCheckpoint.read(file, (lobby, position) -> { }));
+    }
+
+    @Test
+    void corruptRecordChecksumFailsToRestore() throws IOException {
+        Path file = dir.resolve("checksum.bin");
+        StoreCheckpoint.write(file, List.of(record(new Lobby("ABCDEF"))), 3);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> StoreCheckpoint.read(file, (lobby, position) -> { }));
+    }
+
+    private static StoreCheckpoint.Record record(Lobby lobby) {
+        return new StoreCheckpoint.Record(EventJournal.position(3, 8), LobbyCodec.encode(lobby));
+    }
+
+    private InMemoryStore recover() throws IOException {
+        InMemoryStore store = new InMemoryStore();
+        EventJournal journal = journal();
+        StoreRecovery recovery = new StoreRecovery();
+        ReflectionTestUtils.setField(recovery, "store", store);
+        ReflectionTestUtils.setField(recovery, "journal", journal);
+        ReflectionTestUtils.setField(recovery, "checkpoint", checkpoint(store, journal, executor()));
+        ReflectionTestUtils.setField(recovery, "lobbyReaper", new LobbyReaper(false, 1440, 4096));
+        recovery.recover();
+        return store;
+    }
+
+    private EventJournal journal() throws IOException {
+        EventJournal journal = new EventJournal(true, dir.resolve("journal").toString(), 1, 10);
+        journal.open();
+        journals.add(journal);
+        return journal;
+    }
+
+    private LobbyExecutor executor() {
+        LobbyExecutor executor = new LobbyExecutor(4);
+        executors.add(executor);
+        return executor;
+    }
+
+    private StoreCheckpoint checkpoint(InMemoryStore store, EventJournal journal, LobbyExecutor lanes) {
+        StoreCheckpoint checkpoint = new StoreCheckpoint();
+        ReflectionTestUtils.setField(checkpoint, "store", store);
+        ReflectionTestUtils.setField(checkpoint, "journal", journal);
+        ReflectionTestUtils.setField(checkpoint, "lobbyExecutor", lanes);
+        ReflectionTestUtils.setField(checkpoint, "enabled", true);
+        ReflectionTestUtils.setField(checkpoint, "file", dir.resolve("checkpoint.bin").toString());
+        return checkpoint;
+    }
+}
@@ -0,0 +1,101 @@
+package com.mafia.store;
+
+import com.mafia.model.Lobby;
+import com.mafia.service.LobbyExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StoreRecoveryTest {
+    private static final UUID ANN = UUID.randomUUID();
+    private static final UUID BOB = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayIsIdempotent() throws Exception {
+        EventJournal journal = journal();
+        JournalEvent created = new JournalEvent.LobbyCreated("ABC123", 20, 16, 16);
+        JournalEvent joined = new JournalEvent.PlayerJoined("ABC123", ANN, "token-ann", "Ann");
+        journal.append(created);
+        journal.append(joined);
+        journal.append(new JournalEvent.PlayerEliminated("ABC123", ANN));
+        journal.append(created);
+        journal.append(joined);
+        journal.close();
+
+        Lobby lobby = recover().getLobby("ABC123");
+        assertEquals(1, lobby.getPlayerCount());
+        assertFalse(lobby.getPlayerById(ANN).isAlive());
+    }
+
+    @Test
+    void joinBeyondCapacityIsSkipped() throws Exception {
+        EventJournal journal = journal();
+        journal.append(new JournalEvent.LobbyCreated("ABC123", 1, 16, 16));
+        journal.append(new JournalEvent.PlayerJoined("ABC123", ANN, "token-ann", "Ann"));
+        journal.append(new JournalEvent.PlayerJoined("ABC123", BOB, "token-bob", "Bob"));
+        journal.append(new JournalEvent.PlayerRenamed("ABC123", ANN, "Anna"));
+        journal.close();
+
+        InMemoryStore store = recover();
+        Lobby lobby = store.getLobby("ABC123");
+        assertEquals(1, lobby.getPlayerCount());
+        assertEquals("Anna", lobby.getPlayerById(ANN).getName());
+        assertNull(store.getLobbyIdByToken("token-bob"));
+    }
+
+    @Test
+    void deletedLobbyStaysDeleted() throws Exception {
+        EventJournal journal = journal();
+        journal.append(new JournalEvent.LobbyCreated("ABC123", 20, 16, 16));
+        journal.append(new JournalEvent.PlayerJoined("ABC123", ANN, "token-ann", "Ann"));
+        journal.append(new JournalEvent.LobbyDeleted("ABC123"));
+        journal.append(new JournalEvent.PlayerRenamed("ABC123", ANN, "Anna"));
+        journal.close();
+
+        InMemoryStore store = recover();
+        assertNull(store.getLobby("ABC123"));
+        assertNull(store.getLobbyIdByToken("token-ann"));
+    }
+
+    private InMemoryStore recover() throws IOException, InterruptedException {
+        InMemoryStore store = new InMemoryStore();
+        EventJournal journal = journal();
+        LobbyExecutor lanes = new LobbyExecutor(2);
+        StoreCheckpoint checkpoint = new StoreCheckpoint();
+        ReflectionTestUtils.setField(checkpoint, "store", store);
+        ReflectionTestUtils.setField(checkpoint, "journal", journal);
+        ReflectionTestUtils.setField(checkpoint, "lobbyExecutor", lanes);
+        ReflectionTestUtils.setField(checkpoint, "enabled", true);
+        ReflectionTestUtils.setField(checkpoint, "file", dir.resolve("checkpoint.bin").toString());
+
+        StoreRecovery recovery = new StoreRecovery();
+        ReflectionTestUtils.setField(recovery, "store", store);
+        ReflectionTestUtils.setField(recovery, "journal", journal);
+        ReflectionTestUtils.setField(recovery, "checkpoint", checkpoint);
+        ReflectionTestUtils.setField(recovery, "lobbyReaper", new LobbyReaper(false, 1440, 4096));
+        try {
+            recovery.recover();
+        } finally {
+            journal.close();
+            lanes.shutdown();
+        }
+        return store;
+    }
+
+    private EventJournal journal() throws IOException {
+        EventJournal journal = new EventJournal(true, dir.resolve("journal").toString(), 1, 10);
+        journal.open();
+        return journal;
+    }
+}
@@ -34,6 +34,18 @@ export interface LobbyResponse {
   playerToken?: string;
   playerId?: string;
   players: PlayerInfo[];
+  node?: string | null; // Base URL of the node owning the lobby (cluster mode only)
+}
+
+export interface LobbyNodeResponse {
+  lobbyId: string;
+  node: string | null; // null when clustering is disabled
+}
+
+export interface AnnouncementPage {
+  start: number; // Index of the first announcement; pass as `before` for the next older page
+  announcements: string[];
+  hasMore: boolean;
 }
 
 /**
@@ -69,4 +81,29 @@ export const lobbyApi = {
     const response = await apiClient.get<LobbyResponse>(`/lobby/${lobbyId}`);
     return response.data;
   },
+
+  /**
+   * Get the node owning a lobby (answered by any node).
+   */
+  getLobbyNode: async (lobbyId: string): Promise<LobbyNodeResponse> => {
+    const response = await apiClient.get<LobbyNodeResponse>(
+      `/lobby/${lobbyId}/node`
+    );
+    return response.data;
+  },
+
+  /**
+   * Get a page of announcement history (oldest first), before the given index.
+   */
+  getAnnouncements: async (
+    lobbyId: string,
+    before?: number,
+    limit = 50
+  ): Promise<AnnouncementPage> => {
+    const response = await apiClient.get<AnnouncementPage>(
+      `/lobby/${lobbyId}/announcements`,
+      { params: { before, limit } }
+    );
+    return response.data;
+  },
 };
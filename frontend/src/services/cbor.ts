@@ -0,0 +1,138 @@
+/**
+ * CBOR decoder for frames sent with an "encoding:cbor" header.
+ *
+ * Decodes the subset the backend writes (see CborTranscoder): definite-length
+ * maps and arrays, integers, strings, floats, booleans and null. Integer map
+ * keys are indices into FRAME_KEYS, and tag 37 wraps a UUID's 16 bytes.
+ *
+ * Keep FRAME_KEYS in sync with backend: CborTranscoder.KEYS (append only).
+ */
+
+export const FRAME_KEYS = [
+  "type", "data", "sequence", "players", "changed", "id", "name", "alive",
+  "connected", "god", "newPhase", "dayCount", "announcement", "yourRole",
+  "lobbyId", "currentPhase", "playerListSequence", "announcements",
+  "announcementsStart", "playerId", "role", "message", "timestamp",
+  "action", "targetId", "outcome",
+];
+
+const TAG_UUID = 37;
+const textDecoder = new TextDecoder();
+const HEX = Array.from({ length: 256 }, (_, b) => b.toString(16).padStart(2, "0"));
+
+export function decodeFrame(bytes: Uint8Array): unknown {
+  const view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+  let pos = 0;
+
+  const readLength = (info: number): number => {
+    if (info < 24) return info;
+    let value: number;
+    switch (info) {
+      case 24:
+        value = view.getUint8(pos);
+        pos += 1;
+        return value;
+      case 25:
+        value = view.getUint16(pos);
+        pos += 2;
+        return value;
+      case 26:
+        value = view.getUint32(pos);
+        pos += 4;
+        return value;
+      case 27:
+        value = Number(view.getBigUint64(pos));
+        pos += 8;
+        return value;
+      default:
+        throw new Error(`Unsupported CBOR length ${info}`);
+    }
+  };
+
+  const uuid = (raw: Uint8Array): string => {
+    let s = "";
+    for (let i = 0; i < 16; i++) {
+      if (i === 4 || i === 6 || i === 8 || i === 10) s += "-";
+      s += HEX[raw[i]];
+    }
+    return s;
+  };
+
+  // TextDecoder has a high fixed cost; short ASCII strings (names, enum values) are cheaper by hand
+  const text = (length: number): string => {
+    const end = pos + length;
+    if (length <= 64) {
+      let s = "";
+      for (let i = pos; i < end; i++) {
+        const b = bytes[i];
+        if (b >= 0x80) return textDecoder.decode(bytes.subarray(pos, end));
+        s += String.fromCharCode(b);
+      }
+      return s;
+    }
+    return textDecoder.decode(bytes.subarray(pos, end));
+  };
+
+  const read = (): unknown => {
+    const initial = view.getUint8(pos++);
+    const major = initial >> 5;
+    const info = initial & 0x1f;
+    switch (major) {
+      case 0:
+        return readLength(info);
+      case 1:
+        return -1 - readLength(info);
+      case 2: {
+        const length = readLength(info);
+        const raw = bytes.subarray(pos, pos + length);
+        pos += length;
+        return raw;
+      }
+      case 3: {
+        const length = readLength(info);
+        const value = text(length);
+        pos += length;
+        return value;
+      }
+      case 4: {
+        const length = readLength(info);
+        const array = new Array<unknown>(length);
+        for (let i = 0; i < length; i++) array[i] = read();
+        return array;
+      }
+      case 5: {
+        const length = readLength(info);
+        const map: Record<string, unknown> = {};
+        for (let i = 0; i < length; i++) {
+          const key = read();
+          map[typeof key === "number" ? FRAME_KEYS[key] ?? String(key) : String(key)] = read();
+        }
+        return map;
+      }
+      case 6: {
+        const tag = readLength(info);
+        const value = read();
+        return tag === TAG_UUID && value instanceof Uint8Array ? uuid(value) : value;
+      }
+      default:
+        switch (info) {
+          case 20:
+            return false;
+          case 21:
+            return true;
+          case 22:
+          case 23:
+            return null;
+          case 27: {
+            const value = view.getFloat64(pos);
+            pos += 8;
+            return value;
+          }
+          default:
+            throw new Error(`Unsupported CBOR simple value ${info}`);
+        }
+    }
+  };
+
+  return read();
+}
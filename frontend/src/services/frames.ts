@@ -0,0 +1,41 @@
+import { IMessage } from "@stomp/stompjs";
+import { decodeFrame } from "./cbor";
+
+/**
+ * Decode a MESSAGE body by its headers (see backend FrameEncoding):
+ * - "compression: deflate": zlib-compressed, in a binary frame or as base64 text
+ * - "encoding: cbor": CBOR, otherwise JSON
+ */
+export async function decodeBody(message: IMessage): Promise<unknown> {
+  let bytes: Uint8Array | null = null;
+  if (message.headers["compression"] === "deflate") {
+    const compressed = message.isBinaryBody
+      ? message.binaryBody
+      : base64ToBytes(message.body);
+    bytes = await inflate(compressed);
+  }
+
+  if (message.headers["encoding"] === "cbor") {
+    return decodeFrame(bytes ?? message.binaryBody);
+  }
+  return JSON.parse(bytes ? new TextDecoder().decode(bytes) : message.body);
+}
+
+async function inflate(compressed: Uint8Array): Promise<Uint8Array> {
+  const stream = new ReadableStream<Uint8Array>({
+    start(controller) {
+      controller.enqueue(compressed);
+      controller.close();
+    },
+  }).pipeThrough(new DecompressionStream("deflate"));
+  return new Uint8Array(await new Response(stream).arrayBuffer());
+}
+
+function base64ToBytes(base64: string): Uint8Array {
+  const binary = atob(base64);
+  const bytes = new Uint8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  return bytes;
+}
@@ -1,16 +1,22 @@
-import { Client, IMessage } from "@stomp/stompjs";
+import { Client, IMessage, IStompSocket } from "@stomp/stompjs";
 import SockJS from "sockjs-client";
 import { store } from "../store/store";
+import { lobbyApi } from "./api";
+import { decodeBody } from "./frames";
 import { setConnected, setError } from "../store/slices/websocketSlice";
 import { setRole } from "../store/slices/playerSlice";
 import { setPhase, addAnnouncement } from "../store/slices/gameSlice";
-import { updatePlayers } from "../store/slices/lobbySlice";
+import { updatePlayers, applyPlayerDelta } from "../store/slices/lobbySlice";
 import {
   WebSocketMessage,
   isPlayerListUpdate,
+  isPlayerListDelta,
   isPhaseChange,
   isGameSnapshot,
   isRoleAssigned,
+  isNightActionResult,
+  isPlayerEliminated,
+  NightActionType,
 } from "../types";
 
 /**
@@ -19,11 +25,35 @@ import {
  *
  * All messages follow envelope format: { type: MessageType, data: {...} }
  * Game snapshot is automatically sent by backend on connect.
+ *
+ * Lobby events carry a "seq" header. On reconnect the last seen sequence is
+ * sent as "lastSeq" in CONNECT, and the backend replays only missed events
+ * (or sends a fresh snapshot if they are no longer buffered).
+ *
+ * In cluster mode each lobby lives on one node; the owner is looked up before
+ * every (re)connect and the socket is opened there.
+ *
+ * The socket is a plain WebSocket to /ws/native. If that never gets as far
+ * as CONNECTED (e.g. a proxy that doesn't pass upgrades), later attempts use
+ * SockJS at /ws. STOMP heartbeats keep idle connections open either way.
+ *
+ * CONNECT asks for CBOR frames and deflate compression of large frames.
+ * The backend only grants CBOR on native WebSocket connections (SockJS stays
+ * JSON) and marks rewritten frames with "encoding"/"compression" headers, so
+ * each frame is decoded by its own headers. Decoding can be async
+ * (decompression), so messages are handled through a chain that keeps
+ * their order.
  */
 class WebSocketService {
   private client: Client | null = null;
   private lobbyId: string | null = null;
   private playerId: string | null = null;
+  private playerListSequence = 0;
+  private lastSeq: number | null = null;
+  private nodeUrl = ""; // Owner node base URL; empty = same origin
+  private inbound: Promise<void> = Promise.resolve(); // Handles messages in arrival order
+  private useSockJs = false; // Native WebSocket failed to connect; use SockJS from now on
+  private nativeConnected = false; // Native WebSocket has connected at least once
 
   /**
    * Connect to WebSocket server with player token.
@@ -34,6 +64,9 @@ class WebSocketService {
       return;
     }
 
+    if (this.lobbyId !== lobbyId || this.playerId !== playerId) {
+      this.lastSeq = null; // Sequences are per lobby
+    }
     this.lobbyId = lobbyId;
     this.playerId = playerId;
 
@@ -44,20 +77,53 @@ class WebSocketService {
     });
 
     this.client = new Client({
-      webSocketFactory: () => new SockJS("/ws"),
+      webSocketFactory: () => this.openSocket(),
       connectHeaders: {
         playerToken: playerToken,
+        encoding: "cbor",
+        compression: "deflate",
       },
       debug: (str) => {
         console.log("STOMP: " + str);
       },
       reconnectDelay: 5000,
-      heartbeatIncoming: 4000,
-      heartbeatOutgoing: 4000,
+      heartbeatIncoming: 25000,
+      heartbeatOutgoing: 25000,
     });
 
+    // Before every (re)connect: find the lobby's node and refresh lastSeq
+    // so only missed events are replayed
+    this.client.beforeConnect = async () => {
+      try {
+        const { node } = await lobbyApi.getLobbyNode(lobbyId);
+        this.nodeUrl = node ?? "";
+      } catch (error) {
+        console.warn("Could not look up lobby node, using current one:", error);
+      }
+      if (!this.client) return;
+      if (this.lastSeq !== null) {
+        this.client.connectHeaders = {
+          playerToken,
+          lobbyId,
+          encoding: "cbor",
+          compression: "deflate",
+          lastSeq: String(this.lastSeq),
+        };
+      } else {
+        this.client.connectHeaders = {
+          playerToken,
+          lobbyId,
+          encoding: "cbor",
+          compression: "deflate",
+        };
+      }
+    };
+
     this.client.onConnect = () => {
       console.log("WebSocket connected successfully");
+      if (!this.useSockJs) {
+        this.nativeConnected = true;
+      }
       store.dispatch(setConnected(true));
       this.subscribeToChannels();
       // No manual reconnect request needed - backend auto-sends GAME_SNAPSHOT
@@ -69,6 +135,12 @@ class WebSocketService {
         frame.headers["message"] || frame.body || "WebSocket error";
       store.dispatch(setError(errorMsg));
 
+      // Connected to a node that doesn't own the lobby; the next reconnect
+      // looks up the owner again
+      if (errorMsg.includes("Lobby owned by")) {
+        return;
+      }
+
       // If token is invalid, clear localStorage and redirect to home
       if (
         errorMsg.includes("Invalid playerToken") ||
@@ -94,12 +166,28 @@ class WebSocketService {
 
     this.client.onWebSocketClose = () => {
       console.log("WebSocket closed");
+      if (!this.useSockJs && !this.nativeConnected) {
+        console.warn("Native WebSocket unavailable, falling back to SockJS");
+        this.useSockJs = true;
+      }
       store.dispatch(setConnected(false));
     };
 
     this.client.activate();
   }
 
+  /**
+   * Open the transport for the lobby's node: native WebSocket, or SockJS
+   * after native has failed.
+   */
+  private openSocket(): IStompSocket {
+    if (this.useSockJs) {
+      return new SockJS(`${this.nodeUrl}/ws`) as IStompSocket;
+    }
+    const origin = this.nodeUrl || window.location.origin;
+    return new WebSocket(`${origin.replace(/^http/, "ws")}/ws/native`);
+  }
+
   /**
    * Subscribe to relevant channels.
    */
@@ -109,34 +197,65 @@ class WebSocketService {
     // Subscribe to lobby broadcasts (PLAYER_LIST_UPDATE, PHASE_CHANGE)
     this.client.subscribe(
       `/topic/lobby/${this.lobbyId}`,
-      (message: IMessage) => {
-        this.handleMessage(message, "lobby");
-      }
+      (message: IMessage) => this.enqueue(message, "lobby")
     );
 
-    // Subscribe to private player messages (GAME_SNAPSHOT, ROLE_ASSIGNED)
+    // Subscribe to private player messages (GAME_SNAPSHOT, ROLE_ASSIGNED, NIGHT_ACTION_RESULT)
     this.client.subscribe(
       `/queue/player/${this.playerId}`,
-      (message: IMessage) => {
-        this.handleMessage(message, "player");
-      }
+      (message: IMessage) => this.enqueue(message, "player")
     );
   }
 
+  private enqueue(message: IMessage, source: "lobby" | "player"): void {
+    this.inbound = this.inbound.then(() => this.handleMessage(message, source));
+  }
+
   /**
    * Handle incoming WebSocket message with typed envelope.
    */
-  private handleMessage(message: IMessage, source: "lobby" | "player"): void {
+  private async handleMessage(
+    message: IMessage,
+    source: "lobby" | "player"
+  ): Promise<void> {
     try {
-      const wsMessage = JSON.parse(message.body) as WebSocketMessage;
+      const wsMessage = (await decodeBody(message)) as WebSocketMessage;
       console.log(`[${source}] Received:`, wsMessage.type, wsMessage.data);
 
+      const seqHeader = message.headers["seq"];
+      if (seqHeader !== undefined) {
+        const seq = Number(seqHeader);
+        if (isGameSnapshot(wsMessage)) {
+          this.lastSeq = seq; // Snapshot reflects every event up to seq
+        } else if (this.lastSeq !== null && seq <= this.lastSeq) {
+          return; // Already seen (e.g. replayed and delivered live)
+        } else {
+          this.lastSeq = seq;
+        }
+      }
+
       // Use type guards for type-safe message handling
       if (isPlayerListUpdate(wsMessage)) {
+        this.playerListSequence = wsMessage.data.sequence;
         store.dispatch(updatePlayers(wsMessage.data.players));
         return;
       }
 
+      if (isPlayerListDelta(wsMessage)) {
+        const { sequence, changed } = wsMessage.data;
+        if (sequence <= this.playerListSequence) {
+          return; // Already covered by a newer snapshot or full list
+        }
+        if (sequence !== this.playerListSequence + 1) {
+          // Missed a delta - ask for the full list
+          this.send(`/app/lobby/${this.lobbyId}/resync`, {});
+          return;
+        }
+        this.playerListSequence = sequence;
+        store.dispatch(applyPlayerDelta(changed));
+        return;
+      }
+
       if (isPhaseChange(wsMessage)) {
         store.dispatch(
           setPhase({
@@ -152,6 +271,7 @@ class WebSocketService {
         const { data } = wsMessage;
 
         // Update lobby state with full player list
+        this.playerListSequence = data.playerListSequence;
         store.dispatch(updatePlayers(data.players));
 
         // Update player's role
@@ -184,9 +304,20 @@ class WebSocketService {
         return;
       }
 
+      if (isNightActionResult(wsMessage)) {
+        store.dispatch(addAnnouncement(wsMessage.data.message));
+        return;
+      }
+
+      if (isPlayerEliminated(wsMessage)) {
+        // The alive flag arrives with the next player list delta
+        store.dispatch(addAnnouncement(wsMessage.data.announcement));
+        return;
+      }
+
       console.warn("Unknown message type:", wsMessage);
     } catch (error) {
-      console.error("Failed to parse WebSocket message:", error, message.body);
+      console.error("Failed to parse WebSocket message:", error, message.headers);
     }
   }
 
@@ -205,6 +336,14 @@ class WebSocketService {
     });
   }
 
+  /**
+   * Submit this player's night action (kill, save or investigate a player).
+   * A later submission in the same night replaces the earlier one.
+   */
+  submitNightAction(action: NightActionType, targetId: string): void {
+    this.send(`/app/game/${this.lobbyId}/night/${action.toLowerCase()}`, { targetId });
+  }
+
   /**
    * Disconnect from WebSocket server.
    */
@@ -40,6 +40,17 @@ const lobbySlice = createSlice({
     updatePlayers: (state, action: PayloadAction<PlayerInfo[]>) => {
       state.players = action.payload;
     },
+    applyPlayerDelta: (state, action: PayloadAction<PlayerInfo[]>) => {
+      // Replace changed players by id; unknown ids are new joins
+      action.payload.forEach((changed) => {
+        const index = state.players.findIndex((p) => p.id === changed.id);
+        if (index >= 0) {
+          state.players[index] = changed;
+        } else {
+          state.players.push(changed);
+        }
+      });
+    },
     clearLobby: (state) => {
       state.lobbyId = null;
       state.players = [];
@@ -48,5 +59,6 @@ const lobbySlice = createSlice({
   },
 });
 
-export const { setLobby, updatePlayers, clearLobby } = lobbySlice.actions;
+export const { setLobby, updatePlayers, applyPlayerDelta, clearLobby } =
+  lobbySlice.actions;
 export default lobbySlice.reducer;
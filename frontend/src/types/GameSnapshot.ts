@@ -18,7 +18,9 @@ export interface GameSnapshotData {
   yourRole: Role | null;
   alive: boolean;
   players: PlayerSnapshot[];
-  announcements: string[];
+  playerListSequence: number;
+  announcements: string[]; // Latest announcements only
+  announcementsStart: number; // Index of the first one; older pages via lobbyApi.getAnnouncements
 }
 
 /** GAME_SNAPSHOT message envelope */
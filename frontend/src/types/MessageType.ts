@@ -7,10 +7,13 @@
 export enum MessageType {
   // Lobby messages (broadcast to /topic/lobby/{id})
   PLAYER_LIST_UPDATE = "PLAYER_LIST_UPDATE",
+  PLAYER_LIST_DELTA = "PLAYER_LIST_DELTA",
   PHASE_CHANGE = "PHASE_CHANGE",
   GAME_ANNOUNCEMENT = "GAME_ANNOUNCEMENT",
+  PLAYER_ELIMINATED = "PLAYER_ELIMINATED",
 
   // Player messages (sent to /queue/player/{id})
   GAME_SNAPSHOT = "GAME_SNAPSHOT",
   ROLE_ASSIGNED = "ROLE_ASSIGNED",
+  NIGHT_ACTION_RESULT = "NIGHT_ACTION_RESULT",
 }
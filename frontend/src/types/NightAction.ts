@@ -0,0 +1,16 @@
+/**
+ * Night Action Types
+ *
+ * Keep in sync with backend: com.mafia.model.enums.NightActionType / NightOutcome
+ */
+
+/** Night action, sent to /app/game/{id}/night/{kill|save|investigate} */
+export type NightActionType = "KILL" | "SAVE" | "INVESTIGATE";
+
+/** What a night action led to */
+export type NightOutcome =
+  | "KILLED"
+  | "SAVED"
+  | "NO_ATTACK"
+  | "MAFIA"
+  | "NOT_MAFIA";
@@ -0,0 +1,30 @@
+/**
+ * Night Action Result Message Types
+ *
+ * Sent to /queue/player/{id} when the night is resolved, to each player
+ * whose night action counted.
+ */
+
+import { MessageType } from "./MessageType";
+import { NightActionType, NightOutcome } from "./NightAction";
+
+/** Data payload for NIGHT_ACTION_RESULT message */
+export interface NightActionResultData {
+  action: NightActionType;
+  targetId: string;
+  outcome: NightOutcome;
+  message: string;
+}
+
+/** NIGHT_ACTION_RESULT message envelope */
+export interface NightActionResultMessage {
+  type: MessageType.NIGHT_ACTION_RESULT;
+  data: NightActionResultData;
+}
+
+/** Type guard for NIGHT_ACTION_RESULT message */
+export function isNightActionResult(msg: {
+  type: MessageType;
+}): msg is NightActionResultMessage {
+  return msg.type === MessageType.NIGHT_ACTION_RESULT;
+}
@@ -0,0 +1,28 @@
+/**
+ * Player Eliminated Message Types
+ *
+ * Broadcast to /topic/lobby/{id} when a player dies.
+ * The player's alive flag also arrives in the next PLAYER_LIST_DELTA.
+ */
+
+import { MessageType } from "./MessageType";
+
+/** Data payload for PLAYER_ELIMINATED message */
+export interface PlayerEliminatedData {
+  playerId: string;
+  name: string;
+  announcement: string;
+}
+
+/** PLAYER_ELIMINATED message envelope */
+export interface PlayerEliminatedMessage {
+  type: MessageType.PLAYER_ELIMINATED;
+  data: PlayerEliminatedData;
+}
+
+/** Type guard for PLAYER_ELIMINATED message */
+export function isPlayerEliminated(msg: {
+  type: MessageType;
+}): msg is PlayerEliminatedMessage {
+  return msg.type === MessageType.PLAYER_ELIMINATED;
+}
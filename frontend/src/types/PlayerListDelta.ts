@@ -0,0 +1,29 @@
+/**
+ * Player List Delta Message Types
+ *
+ * Broadcast to /topic/lobby/{id} with only the players that changed.
+ * Apply when sequence is exactly one past the last seen sequence;
+ * otherwise request a full list via /app/lobby/{id}/resync.
+ */
+
+import { MessageType } from "./MessageType";
+import { PlayerSnapshot } from "./PlayerSnapshot";
+
+/** Data payload for PLAYER_LIST_DELTA message */
+export interface PlayerListDeltaData {
+  sequence: number;
+  changed: PlayerSnapshot[];
+}
+
+/** PLAYER_LIST_DELTA message envelope */
+export interface PlayerListDeltaMessage {
+  type: MessageType.PLAYER_LIST_DELTA;
+  data: PlayerListDeltaData;
+}
+
+/** Type guard for PLAYER_LIST_DELTA message */
+export function isPlayerListDelta(msg: {
+  type: MessageType;
+}): msg is PlayerListDeltaMessage {
+  return msg.type === MessageType.PLAYER_LIST_DELTA;
+}
@@ -1,7 +1,8 @@
 /**
  * Player List Update Message Types
  *
- * Broadcast to /topic/lobby/{id} when players join, leave, or change status.
+ * Full player list at a sequence number. Sent in reply to a resync request
+ * or on explicit refresh; routine changes arrive as PLAYER_LIST_DELTA.
  */
 
 import { MessageType } from "./MessageType";
@@ -9,6 +10,7 @@ import { PlayerSnapshot } from "./PlayerSnapshot";
 
 /** Data payload for PLAYER_LIST_UPDATE message */
 export interface PlayerListUpdateData {
+  sequence: number;
   players: PlayerSnapshot[];
 }
 
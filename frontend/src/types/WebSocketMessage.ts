@@ -5,15 +5,21 @@
  */
 
 import { PlayerListUpdateMessage } from "./PlayerListUpdate";
+import { PlayerListDeltaMessage } from "./PlayerListDelta";
 import { PhaseChangeMessage } from "./PhaseChange";
 import { GameSnapshotMessage } from "./GameSnapshot";
 import { RoleAssignedMessage } from "./RoleAssigned";
 import { GameAnnouncementMessage } from "./GameAnnouncement";
+import { NightActionResultMessage } from "./NightActionResult";
+import { PlayerEliminatedMessage } from "./PlayerEliminated";
 
 /** Union of all possible WebSocket messages */
 export type WebSocketMessage =
   | PlayerListUpdateMessage
+  | PlayerListDeltaMessage
   | PhaseChangeMessage
   | GameSnapshotMessage
   | RoleAssignedMessage
-  | GameAnnouncementMessage;
+  | GameAnnouncementMessage
+  | NightActionResultMessage
+  | PlayerEliminatedMessage;
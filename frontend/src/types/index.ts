@@ -6,16 +6,20 @@
 export * from "./MessageType";
 export * from "./GamePhase";
 export * from "./Role";
+export * from "./NightAction";
 
 // Shared Interfaces
 export * from "./PlayerSnapshot";
 
 // Message Types
 export * from "./PlayerListUpdate";
+export * from "./PlayerListDelta";
 export * from "./PhaseChange";
 export * from "./GameSnapshot";
 export * from "./RoleAssigned";
 export * from "./GameAnnouncement";
+export * from "./NightActionResult";
+export * from "./PlayerEliminated";
 
 // Union Type & Type Guards
 export * from "./WebSocketMessage";